@@ -3,40 +3,52 @@ package draylar.rose;
 import com.mohamnag.fxwebview_debugger.DevToolsDebuggerServer;
 import com.sun.javafx.scene.web.Debugger;
 import draylar.rose.api.Epub;
-import draylar.rose.api.HTMLHelper;
-import draylar.rose.api.HeightHelper;
-import draylar.rose.api.book.SpineEntry;
-import draylar.rose.api.web.WebViewHelper;
+import draylar.rose.api.cover.CoverCache;
+import draylar.rose.api.library.CatalogEntry;
+import draylar.rose.api.library.LibraryCatalog;
+import draylar.rose.api.library.LibraryWatcher;
+import draylar.rose.api.page.PageNavigator;
+import draylar.rose.api.page.PaginationEngine;
+import draylar.rose.api.page.ReadingPosition;
+import draylar.rose.api.page.SectionCache;
+import draylar.rose.api.task.LoadPriority;
+import draylar.rose.api.task.LoadScheduler;
+import draylar.rose.api.web.EpubURLStreamHandler;
 import draylar.rose.fx.BookIconNode;
+import draylar.rose.fx.LibraryGrid;
+import draylar.rose.fx.PageTurnRenderer;
 import draylar.rose.fx.Sidebar;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.scene.control.Label;
 import javafx.scene.input.KeyCode;
 import javafx.scene.layout.FlowPane;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.web.WebEngine;
-import javafx.scene.web.WebView;
 import javafx.stage.Stage;
-import javafx.util.Pair;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.lang.reflect.Field;
-import java.net.URI;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class Rose extends Application {
 
@@ -44,14 +56,25 @@ public class Rose extends Application {
     public static final Path ROSE_LIBRARY_DATA_PATH = Paths.get(System.getProperty("user.home"), "Rose Library", "Data");
     public static Parent home;
     public static Scene scene;
-    public static int page = 0;
+    @Nullable private static PageNavigator reader;
 
-    private List<Epub> loaded = new ArrayList<>();
+    // Roughly the number of books visible in the library grid before scrolling.
+    private static final int VISIBLE_BOOKS = 36;
+
+    private final Map<Path, Epub> displayed = new ConcurrentHashMap<>();
+    private LibraryCatalog catalog;
+    private LibraryGrid allBooks;
+    private FlowPane recentBooks;
+    private Sidebar sidebar;
+    @Nullable private LibraryWatcher watcher;
 
     @Override
     public void start(Stage stage) throws Exception {
         initializeRoseLibraryFolder();
 
+        // Book resources are served to the WebView straight from their archives through rose-epub:// URLs.
+        EpubURLStreamHandler.install();
+
         // initialize UI
         home = FXMLLoader.load(getClass().getClassLoader().getResource("root.fxml"));
         scene = new Scene(home, 1350, 900);
@@ -68,56 +91,171 @@ public class Rose extends Application {
 
         // find the general book section in the fxml file
         scene.getRoot().applyCss(); // force load CSS so the following lookup call works (lookups don't work until css is applied)
-        FlowPane allBooks = (FlowPane) scene.lookup("#allBooks");
-        FlowPane recentBooks = (FlowPane) scene.lookup("#recentBooks");
+        allBooks = (LibraryGrid) scene.lookup("#allBooks");
+        recentBooks = (FlowPane) scene.lookup("#recentBooks");
 
         // retrieve sidebar
         HBox sidebarContent = (HBox) scene.lookup("#sidebar");
-        Sidebar sidebar = new Sidebar();
+        sidebar = new Sidebar();
         sidebar.clear();
         sidebarContent.getChildren().add(0, sidebar);
 
+        // on click, show the book in the sidebar
+        allBooks.setOnSelect(sidebar::display);
+
+        // Books which have not changed since the last launch are displayed straight from the library catalog, without opening the .epub file.
+        catalog = LibraryCatalog.load(LibraryCatalog.DEFAULT_LOCATION);
+        catalog.retain(books);
+        List<CompletableFuture<Void>> parsing = new ArrayList<>();
+
         // Each .epub file should have a directory associated with it for metadata & thumbnail cache.
         // These directories are found in /Rose Library/Data. Each data directory has the same filename as the .epub file.
-        books.forEach(path -> {
-            // Each book is loaded on a separate thread, this DRASTICALLY decreases load time
-            new Thread(() -> {
-                Epub epub = new Epub(path);
-                epub.initializeDataDirectory();
-                epub.readCover();
-
-                // Attempt to initialize the epub with its content.opf file.
-                // If it was not found, log an error and continue to the next book.
-                boolean result = epub.loadMetadata(false);
-                if (result) {
-                    loaded.add(epub);
-
-                    // add epub book
-                    Platform.runLater(() -> {
-                        BookIconNode node = new BookIconNode(epub);
-                        allBooks.getChildren().add(node);
-
-                        // makeshift recent section
-                        if(loaded.indexOf(epub) < 6) {
-                            recentBooks.getChildren().add(node);
-                        }
+        for (int i = 0; i < books.size(); i++) {
+            Path path = books.get(i);
+            CatalogEntry entry = catalog.get(path);
+            if (entry != null) {
+                display(new Epub(path, entry.getMetadata()));
+                continue;
+            }
 
-                        // on click, open the book
-                        node.setOnMouseClicked(event -> {
-                            sidebar.display(node.getBook()); // ??????
-                        });
-                    });
-                } else {
-                    // TODO: still add book, but have invalid cover/warning marker on it?
-                    System.out.println(String.format("content.opf could not be read from %s. Is the file a valid .epub? Skipping to the next book.", path.getFileName()));
-                }
-            }).start();
-        });
+            // New or changed books are parsed in the background, this DRASTICALLY decreases load time.
+            // Books that will land in the first few rows of the grid are parsed first.
+            parsing.add(parse(path, i < VISIBLE_BOOKS ? LoadPriority.VISIBLE : LoadPriority.OFFSCREEN));
+        }
+
+        saveCatalog(parsing);
+
+        // Watch the library folder, so books that are added, changed or removed while Rose is open show up without a restart.
+        try {
+            watcher = new LibraryWatcher(ROSE_LIBRARY_PATH, this::onLibraryChanged);
+            watcher.start();
+        } catch (IOException ioException) {
+            ioException.printStackTrace();
+        }
 
         // load
         stage.show();
     }
 
+    /**
+     * Parses the .epub at the given {@link Path} in the background, records it in the library catalog, and displays it.
+     */
+    private CompletableFuture<Void> parse(Path path, LoadPriority priority) {
+        return LoadScheduler.get().run(priority, null, () -> {
+            Epub epub = new Epub(path);
+            epub.initializeDataDirectory();
+
+            // Attempt to initialize the epub with its content.opf file.
+            // If it was not found, log an error and continue to the next book.
+            boolean result = epub.loadMetadata(false);
+            if (result) {
+                catalog.update(epub);
+
+                // Release the archive until the book is actually read, it is re-opened on demand.
+                epub.close();
+                Platform.runLater(() -> display(epub));
+            } else {
+                epub.close();
+
+                // TODO: still add book, but have invalid cover/warning marker on it?
+                System.out.println(String.format("content.opf could not be read from %s. Is the file a valid .epub? Skipping to the next book.", path.getFileName()));
+            }
+        }).exceptionally(error -> {
+            // The scheduler only completes the future with the failure, so it has to be reported here.
+            error.printStackTrace();
+            return null;
+        });
+    }
+
+    // Once every new or changed book has been parsed, persist the catalog for the next launch.
+    private void saveCatalog(List<CompletableFuture<Void>> parsing) {
+        CompletableFuture.allOf(parsing.toArray(new CompletableFuture[0])).whenComplete((unused, error) -> catalog.save());
+    }
+
+    /**
+     * Applies a batch of changes from the {@link LibraryWatcher}.
+     *
+     * <p>
+     * Only the affected books are re-parsed, and only their grid entries are added or removed. The rest of the grid is left alone.
+     */
+    private void onLibraryChanged(LibraryWatcher.Changes changes) {
+        Set<Path> removed = new HashSet<>(changes.getRemoved());
+        Set<Path> changed = new LinkedHashSet<>(changes.getAdded());
+        changed.addAll(changes.getChanged());
+
+        // The OS dropped events, so compare the library folder against what is currently displayed instead.
+        if (changes.isOverflow()) {
+            try (Stream<Path> files = Files.list(ROSE_LIBRARY_PATH)) {
+                Set<Path> present = files.filter(path -> path.toString().endsWith(".epub")).collect(Collectors.toSet());
+                displayed.keySet().stream().filter(path -> !present.contains(path)).forEach(removed::add);
+                present.stream().filter(path -> catalog.get(path) == null).forEach(changed::add);
+            } catch (IOException ioException) {
+                ioException.printStackTrace();
+            }
+        }
+
+        // Changed books are removed and re-added once they have been parsed again.
+        int deleted = removed.size();
+        removed.addAll(changed);
+        removed.forEach(catalog::remove);
+        Platform.runLater(() -> removed.forEach(this::undisplay));
+
+        List<CompletableFuture<Void>> parsing = new ArrayList<>();
+        for (Path path : changed) {
+            if (Files.exists(path)) {
+                parsing.add(parse(path, parsing.size() < VISIBLE_BOOKS ? LoadPriority.VISIBLE : LoadPriority.OFFSCREEN));
+            }
+        }
+
+        System.out.printf("Library changed: %d added or changed, %d removed.%n", changed.size(), deleted);
+        saveCatalog(parsing);
+    }
+
+    /**
+     * Adds the given {@link Epub} to the library screen.
+     *
+     * <p>
+     * Must be called on the JavaFX thread.
+     */
+    private void display(Epub epub) {
+        // A book might have been changed again while it was being parsed, so drop any stale entry first.
+        undisplay(epub.getRoot());
+        displayed.put(epub.getRoot(), epub);
+
+        // add epub book, the grid only creates a node for it once it is scrolled into view
+        allBooks.getBooks().add(epub);
+
+        // makeshift recent section
+        // A node can only have a single parent, so recent books get their own node instead of sharing the grid's.
+        if(recentBooks.getChildren().size() < 6) {
+            BookIconNode node = new BookIconNode(epub);
+            node.setOnMouseClicked(event -> sidebar.display(epub));
+            recentBooks.getChildren().add(node);
+        }
+    }
+
+    /**
+     * Removes the book at the given {@link Path} from the library screen, if it is displayed.
+     *
+     * <p>
+     * Must be called on the JavaFX thread.
+     */
+    private void undisplay(Path path) {
+        Epub epub = displayed.remove(path);
+
+        if (epub != null) {
+            allBooks.getBooks().remove(epub);
+            recentBooks.getChildren().removeIf(node -> node instanceof BookIconNode && ((BookIconNode) node).getBook() == epub);
+
+            // Drop any cover work that is still queued for the book, its cached covers and sections, and release its archive.
+            LoadScheduler.get().cancel(epub.getLoadGroup());
+            CoverCache.get().invalidate(path);
+            SectionCache.get().invalidate(path);
+            EpubURLStreamHandler.unregister(epub);
+            epub.close();
+        }
+    }
+
     public void extractContentFile(Path from, Path to) {
         try {
             FileSystems.newFileSystem(from, Collections.emptyMap())
@@ -158,9 +296,20 @@ public class Rose extends Application {
     }
 
     public static void home() {
+        closeReader();
         scene.setRoot(home);
     }
 
+    /**
+     * Stores the position of the open book, if there is one, before it is closed.
+     */
+    private static void closeReader() {
+        if (reader != null) {
+            reader.flush();
+            reader = null;
+        }
+    }
+
     public static void open(Epub epub) {
         GridPane root = null;
 
@@ -178,106 +327,81 @@ public class Rose extends Application {
        // Force-apply CSS so our search-by-id operations work later on
         root.applyCss();
 
-        // Keep track of all pages & all futures
-        List<String> pages = new ArrayList<>();
-        List<CompletableFuture<Pair<SpineEntry, String[]>>> futures = new ArrayList<>();
         GridPane finalRoot = root;
 
         // Start timer
         long start = System.currentTimeMillis();
 
-        // create webview
-        WebView view = WebViewHelper.from("");
-        root.add(view, 1, 0);
+        // Pages are shown by a renderer which keeps the previous and next pages ready in hidden WebViews.
+        PageTurnRenderer renderer = new PageTurnRenderer();
+        root.add(renderer, 1, 0);
 
         // debug
-        try {
-            Class webEngineClazz = WebEngine.class;
-            Field debuggerField = webEngineClazz.getDeclaredField("debugger");
-            debuggerField.setAccessible(true);
-            Debugger debugger = (Debugger) debuggerField.get(view.getEngine());
-            DevToolsDebuggerServer.startDebugServer(debugger, 51742);
-        } catch (Exception e) {
-            e.printStackTrace();
+        // The renderer only keeps its current WebView in debug mode, so the debugger always inspects the visible page.
+        if (PageTurnRenderer.DEBUG) {
+            try {
+                Class webEngineClazz = WebEngine.class;
+                Field debuggerField = webEngineClazz.getDeclaredField("debugger");
+                debuggerField.setAccessible(true);
+                Debugger debugger = (Debugger) debuggerField.get(renderer.getCurrentView().getEngine());
+                DevToolsDebuggerServer.startDebugServer(debugger, 51742);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
         }
 
-        // For each TOC entry in this epub, calculate pages...
-        epub.getSpine().forEach(entry -> {
-            String html = epub.readSection(entry);
-
-            // HTML files have src/image tags that reference images from their perspective/directory.
-            // Because our HTML file is ""moved"", the references do not link to images properly.
-            // To fix this, we reference saved images which were extracted earlier in the loading pipeline.
-            // Each src attribute is replaced with a src reference to the same local file in the data directory.
-            Pattern pattern = Pattern.compile("src=\"([^\"]+)\"");
-            Matcher matcher = pattern.matcher(html);
-            html = matcher.replaceAll(result -> {
-                String group = result.group(1);
-                URI x = Paths.get(epub.getImageDirectory().toString(), group.substring(group.lastIndexOf("/") + 1)).toUri();
-                return String.format("src=\"%s\"", x);
-            });
-
-            // Retrieve the template (HTML without the body) from the current spine entry.
-            String template = HTMLHelper.getTemplate(html);
-
-            // Create a task to calculate the pages from our HTML.
-            // This future is stored in a list so we can reference it later.
-            HeightHelper helper = new HeightHelper();
-            CompletableFuture<Pair<SpineEntry, String[]>> future = helper.calculatePages(entry, html, finalRoot.getHeight(), finalRoot.getWidth() * .6);
-            futures.add(future);
-
-            // Debug log
-            System.out.printf("Loading %s.\n", entry.getIdref());
-
-            // When the future is finished calculating the pages for this particular entry in the book,
-            //   we iterate over each page and add a WebView element representing the page to our screen.
-            // Additional setup for individual pages also occurs here.
-            future.thenAccept(result -> {
-                for(String page : result.getValue()) {
-                    // TODO: this will break very heavily as soon as a book has %s in it
-                    pages.add(template.replace("%s", page));
-                }
-
-                // If the SpineEntry is the first one in this epub's TOC, load the first page now.
-                if(epub.getSpine().indexOf(result.getKey()) == 0 && !pages.isEmpty()) {
-                    view.getEngine().load(pages.get(0));
-                }
-
-                System.out.printf("%s has loaded! Time taken: " + (System.currentTimeMillis() - start) + "ms%n", result.getKey().getIdref());
-            }).exceptionally(error -> {
-                error.printStackTrace();
-                return null;
-            });
-
-            // Setup arrow-key click events for traversing through pages.
-            finalRoot.setOnKeyPressed(key -> {
-                // Left-key => go one page back
-                if(key.getCode().equals(KeyCode.LEFT)) {
-                    page = Math.max(0, page - 1);
-                    view.getEngine().loadContent(pages.get(page));
-                }
-
-                // Right-key => go one page forwards
-                else if (key.getCode().equals(KeyCode.RIGHT)) {
-                    page = Math.min(pages.size() - 1, page + 1);
-                    view.getEngine().loadContent(pages.get(page));
-                }
-
-                key.consume();
-            });
+        // The page label is refreshed whenever a page is shown, and whenever a section is paginated (as the total page count may become known).
+        Label pageLabel = (Label) root.lookup("#pageLabel");
+        PageNavigator[] reading = { null };
+
+        // Only the sections around the reader are paginated, starting with the section the reader left off in.
+        // The pagination engine can be switched with the rose.pagination system property.
+        boolean[] shown = { false };
+        PageNavigator navigator = new PageNavigator(epub, PaginationEngine.getDefault(), finalRoot.getWidth() * .6, finalRoot.getHeight(), page -> {
+            if(!shown[0]) {
+                shown[0] = true;
+                System.out.println("First page has loaded! Time taken: " + (System.currentTimeMillis() - start) + "ms");
+            }
+
+            renderer.show(page);
+            pageLabel.setText(reading[0].getPageLabel());
+        });
+        reading[0] = navigator;
+        reader = navigator;
+        renderer.setSource(navigator::getDocument);
+        navigator.setOnPaginated(() -> {
+            renderer.refill();
+            pageLabel.setText(navigator.getPageLabel());
         });
+        navigator.open(ReadingPosition.read(epub));
 
-        // Create a future that depends on all entries completing.
-        // Once this future is done, we log a message.
-        CompletableFuture<Void> finished = CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
-        finished.thenAccept(unused -> {
-            System.out.println("All sections have loaded! Time taken: " + (System.currentTimeMillis() - start) + "ms");
+        // Setup arrow-key click events for traversing through pages.
+        finalRoot.setOnKeyPressed(key -> {
+            // Left-key => go one page back
+            if(key.getCode().equals(KeyCode.LEFT)) {
+                navigator.previous();
+            }
+
+            // Right-key => go one page forwards
+            else if (key.getCode().equals(KeyCode.RIGHT)) {
+                navigator.next();
+            }
+
+            key.consume();
         });
     }
 
     @Override
     public void stop() throws Exception {
-        DevToolsDebuggerServer.stopDebugServer();
+        closeReader();
+
+        if (watcher != null) {
+            watcher.close();
+        }
+
+        if (PageTurnRenderer.DEBUG) {
+            DevToolsDebuggerServer.stopDebugServer();
+        }
         super.stop();
     }
 }
@@ -0,0 +1,239 @@
+package draylar.rose.api;
+
+import nu.validator.htmlparser.common.XmlViolationPolicy;
+import nu.validator.htmlparser.sax.HtmlParser;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits the body of an HTML document into its top-level elements while it is being parsed.
+ *
+ * <p>
+ * Parsing is done by the validator.nu HTML parser in streaming mode, so tag-soup HTML (unclosed paragraphs, stray end tags, missing head or body tags)
+ * is handled the same way a browser would handle it, and no DOM is built for the document. Each top-level body element is written out from the
+ * parser's events, and handed to the consumer as soon as its end tag has been seen.
+ *
+ * <p>
+ * Whitespace around line breaks is collapsed into a single line break (outside of {@code <pre>} and {@code <textarea>}), so the indentation of
+ * the source document does not end up in the pages.
+ */
+public class BodySplitter extends DefaultHandler {
+
+    private static final String XHTML = "http://www.w3.org/1999/xhtml";
+    private static final Set<String> VOID_ELEMENTS = Set.of("area", "base", "br", "col", "embed", "hr", "img", "input", "link", "meta", "param", "source", "track", "wbr");
+    private static final Set<String> RAW_TEXT_ELEMENTS = Set.of("script", "style");
+    private static final Set<String> PREFORMATTED_ELEMENTS = Set.of("pre", "textarea", "listing");
+    private static final Pattern DOCTYPE_SUBSET = Pattern.compile("(<!DOCTYPE[^\\[>]*)\\[(.*?)]\\s*>", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern ENTITY_DECLARATION = Pattern.compile("<!ENTITY\\s+([\\w.-]+)\\s+(?:\"([^\"]*)\"|'([^']*)')\\s*>");
+    private static final Pattern ENTITY_REFERENCE = Pattern.compile("&([\\w.-]+);");
+
+    private final Consumer<String> consumer;
+    private final StringBuilder current = new StringBuilder();
+    private boolean inBody = false;
+    private int depth = 0;
+    private int rawText = 0;
+    private int preformatted = 0;
+    private boolean lineBreak = false;
+
+    private BodySplitter(Consumer<String> consumer) {
+        this.consumer = consumer;
+    }
+
+    /**
+     * Parses the given HTML document, and passes each top-level element of its body to the given consumer, in document order.
+     * Text directly inside of the body is passed on as its own element.
+     *
+     * @param html HTML document text
+     * @param consumer called with the markup of each top-level body element
+     */
+    public static void split(String html, Consumer<String> consumer) {
+        html = expandInternalSubset(html);
+        BodySplitter splitter = new BodySplitter(consumer);
+        HtmlParser parser = new HtmlParser(XmlViolationPolicy.ALLOW);
+        parser.setStreamabilityViolationPolicy(XmlViolationPolicy.ALTER_INFOSET);
+        parser.setContentHandler(splitter);
+
+        try {
+            parser.parse(new InputSource(new StringReader(html)));
+        } catch (IOException | SAXException exception) {
+            exception.printStackTrace();
+        }
+    }
+
+    /**
+     * Some XHTML books declare their own entities in an internal DTD subset ({@code <!DOCTYPE html [ <!ENTITY ...> ]>}).
+     * An HTML parser ends the doctype at the first {@code >}, which turns the rest of the subset into body text, and it does not know the entities.
+     * The subset is removed, and its entities are replaced with their values.
+     */
+    private static String expandInternalSubset(String html) {
+        Matcher doctype = DOCTYPE_SUBSET.matcher(html);
+        if (!doctype.find()) {
+            return html;
+        }
+
+        Map<String, String> entities = new HashMap<>();
+        Matcher entity = ENTITY_DECLARATION.matcher(doctype.group(2));
+        while (entity.find()) {
+            entities.put(entity.group(1), entity.group(2) != null ? entity.group(2) : entity.group(3));
+        }
+
+        String body = html.substring(doctype.end());
+        if (!entities.isEmpty()) {
+            body = ENTITY_REFERENCE.matcher(body).replaceAll(reference -> Matcher.quoteReplacement(entities.getOrDefault(reference.group(1), reference.group())));
+        }
+
+        return html.substring(0, doctype.start()) + doctype.group(1) + ">" + body;
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) {
+        if (!inBody) {
+            inBody = XHTML.equals(uri) && localName.equals("body");
+            return;
+        }
+
+        // Text directly inside of the body ends where the next element starts.
+        if (depth == 0) {
+            flush();
+        }
+
+        depth++;
+        lineBreak = false;
+        current.append('<').append(qName);
+        for (int i = 0; i < attributes.getLength(); i++) {
+            current.append(' ').append(attributes.getQName(i)).append("=\"");
+            escape(attributes.getValue(i), true);
+            current.append('"');
+        }
+
+        if (XHTML.equals(uri) && VOID_ELEMENTS.contains(localName)) {
+            current.append("/>");
+        } else {
+            current.append('>');
+        }
+
+        if (RAW_TEXT_ELEMENTS.contains(localName)) {
+            rawText++;
+        }
+
+        if (PREFORMATTED_ELEMENTS.contains(localName)) {
+            preformatted++;
+        }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) {
+        if (!inBody) {
+            return;
+        }
+
+        if (depth == 0) {
+            // End of the body itself.
+            flush();
+            inBody = false;
+            return;
+        }
+
+        depth--;
+        lineBreak = false;
+        if (!(XHTML.equals(uri) && VOID_ELEMENTS.contains(localName))) {
+            current.append("</").append(qName).append('>');
+        }
+
+        if (RAW_TEXT_ELEMENTS.contains(localName)) {
+            rawText--;
+        }
+
+        if (PREFORMATTED_ELEMENTS.contains(localName)) {
+            preformatted--;
+        }
+
+        if (depth == 0) {
+            flush();
+        }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+        if (!inBody) {
+            return;
+        }
+
+        if (rawText > 0) {
+            current.append(ch, start, length);
+        } else if (preformatted > 0) {
+            escape(new String(ch, start, length), false);
+        } else {
+            appendCollapsed(ch, start, length);
+        }
+    }
+
+    @Override
+    public void endDocument() {
+        flush();
+    }
+
+    private void flush() {
+        String element = current.toString().strip();
+        current.setLength(0);
+        lineBreak = false;
+
+        if (!element.isEmpty()) {
+            consumer.accept(element);
+        }
+    }
+
+    /**
+     * Appends the given text, replacing each line break along with the spaces and tabs around it with a single line break.
+     * The parser can report a run of text in several chunks, so whether the last character was a collapsed line break is kept between calls.
+     */
+    private void appendCollapsed(char[] ch, int start, int length) {
+        for (int index = start; index < start + length; index++) {
+            char c = ch[index];
+            if (c == '\r' || c == '\n') {
+                while (current.length() > 0 && isSpace(current.charAt(current.length() - 1))) {
+                    current.setLength(current.length() - 1);
+                }
+
+                if (!lineBreak) {
+                    current.append('\n');
+                    lineBreak = true;
+                }
+            } else if (!lineBreak || !isSpace(c)) {
+                escape(c, false);
+                lineBreak = false;
+            }
+        }
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t';
+    }
+
+    private void escape(String text, boolean attribute) {
+        for (int i = 0; i < text.length(); i++) {
+            escape(text.charAt(i), attribute);
+        }
+    }
+
+    private void escape(char c, boolean attribute) {
+        switch (c) {
+            case '&' -> current.append("&amp;");
+            case '<' -> current.append("&lt;");
+            case '>' -> current.append("&gt;");
+            case '"' -> current.append(attribute ? "&quot;" : "\"");
+            default -> current.append(c);
+        }
+    }
+}
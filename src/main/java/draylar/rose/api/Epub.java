@@ -1,24 +1,18 @@
 package draylar.rose.api;
 
 import draylar.rose.Rose;
+import draylar.rose.api.archive.EpubArchive;
 import draylar.rose.api.book.ManifestEntry;
 import draylar.rose.api.book.SpineEntry;
+import draylar.rose.api.page.SectionCache;
+import draylar.rose.api.task.LoadGroup;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
 
 import javax.imageio.ImageIO;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringReader;
-import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -28,16 +22,22 @@ import java.util.stream.Stream;
 
 /**
  * Represents an .epub book that is in the process of being read from the user's file system.
+ *
+ * <p>
+ * Each {@link Epub} owns a single {@link EpubArchive} for its lifetime, which is opened on first access and
+ * released through {@link #close()}.
  */
-public class Epub {
+public class Epub implements AutoCloseable {
 
-    private static final String ROOTFILE_START = "<rootfile full-path=\"";
+    private static final PackageParser PACKAGE_PARSER = PackageParser.getDefault();
+    private static final String CONTAINER_XML = "META-INF/container.xml";
 
     private final Path root;
+    private final LoadGroup loadGroup;
+    @Nullable private EpubArchive archive;
+    @Nullable private String contentOPFName;
+    @Nullable private PackageDocument packageDocument;
     @Nullable private EpubMetadata metadata;
-    @Nullable private BufferedImage coverImage;
-    private List<ManifestEntry> manifest;
-    private List<SpineEntry> spine;
 
     /**
      * Constructs a {@link Epub} from the given {@link Path}.
@@ -45,8 +45,23 @@ public class Epub {
      */
     public Epub(Path root) {
         this.root = root.toAbsolutePath();
-        loadMetadata(true);
-        extractImages();
+        this.loadGroup = new LoadGroup(this.root.getFileName().toString());
+        loadPackage(false);
+    }
+
+    /**
+     * Constructs a {@link Epub} from the given {@link Path} with metadata that was already read from the {@link draylar.rose.api.library.LibraryCatalog}.
+     *
+     * <p>
+     * Unlike {@link #Epub(Path)}, this does not open the .epub file. The archive and package document are loaded once they are first needed.
+     *
+     * @param root .epub file directory represented by this instance
+     * @param metadata cached metadata of this .epub
+     */
+    public Epub(Path root, EpubMetadata metadata) {
+        this.root = root.toAbsolutePath();
+        this.loadGroup = new LoadGroup(this.root.getFileName().toString());
+        this.metadata = metadata;
     }
 
     /**
@@ -70,47 +85,132 @@ public class Epub {
      */
     @Nullable
     public String readContainerXML() {
-        return read(path -> path.getFileName() != null && path.getFileName().toString().contains("container.xml"));
+        EpubArchive archive = getArchive();
+
+        if(archive != null && archive.contains(CONTAINER_XML)) {
+            return archive.readString(CONTAINER_XML);
+        }
+
+        return read(name -> getFileName(name).contains("container.xml"));
     }
 
     @Nullable
     public String readContentOPF() {
-        return read(path -> path.getFileName() != null && path.getFileName().toString().contains("content.opf"));
+        String name = getContentOPFName();
+        return name == null ? null : read(name);
     }
 
+    /**
+     * Reads the entry with the given name from this .epub.
+     *
+     * @param name normalized entry name, such as {@code OEBPS/content.opf}
+     * @return the contents of the entry, or null if it could not be found/read
+     */
     @Nullable
-    public String read(Predicate<Path> predicate) {
-        Optional<Path> containerXML = find(predicate).findFirst();
+    public String read(String name) {
+        EpubArchive archive = getArchive();
+        return archive == null ? null : archive.readString(name);
+    }
 
-        if(containerXML.isPresent()) {
+    /**
+     * Reads the raw contents of the entry with the given name from this .epub.
+     *
+     * @param name normalized entry name, such as {@code OEBPS/Text/chapter1.xhtml}
+     * @return the raw contents of the entry, or null if it could not be found/read
+     */
+    @Nullable
+    public byte[] readBytes(String name) {
+        EpubArchive archive = getArchive();
+        return archive == null ? null : archive.readBytes(name);
+    }
+
+    /**
+     * Reads the first entry whose name matches the given predicate.
+     *
+     * @param predicate predicate to test against all normalized entry names inside this .epub file
+     * @return the contents of the first matching entry, or null if no entry matched or it could not be read
+     */
+    @Nullable
+    public String read(Predicate<String> predicate) {
+        Optional<String> name = find(predicate).findFirst();
+        return name.map(this::read).orElse(null);
+    }
+
+    /**
+     * Returns the normalized names of all entries inside this .epub which match the given predicate, such as {@code OEBPS/content.opf}.
+     *
+     * <p>
+     * Entries are matched against the index of the open {@link EpubArchive}, so this does not re-walk the archive.
+     *
+     * @param predicate predicate to test against all normalized entry names inside this .epub file
+     * @return the names of all entries that match the predicate
+     */
+    public Stream<String> find(Predicate<String> predicate) {
+        EpubArchive archive = getArchive();
+        return archive == null ? Stream.empty() : archive.find(predicate);
+    }
+
+    /**
+     * Returns the {@link EpubArchive} backing this .epub, opening it if it has not been opened yet.
+     *
+     * @return the archive backing this .epub, or null if the file could not be opened
+     */
+    @Nullable
+    public synchronized EpubArchive getArchive() {
+        if(archive == null) {
             try {
-                return Files.readString(containerXML.get());
-            } catch (Exception e) {
-                e.printStackTrace();
+                archive = EpubArchive.open(root);
+            } catch (IOException ioException) {
+                ioException.printStackTrace();
             }
         }
 
-        return null;
+        return archive;
     }
 
     /**
-     * Returns a {@link List} of {@link Path} entries (ZipPath) inside this .epub which match the given predicate.
-     *
-     * @param predicate predicate to test against all entry paths inside this .epub file
-     * @return all elements that match the predicate
+     * @return the normalized entry name of this .epub's content.opf file, as declared by container.xml, or null if it could not be determined
      */
-    public Stream<Path> find(Predicate<Path> predicate) {
-        try {
-            for (Path inner : FileSystems.newFileSystem(root, Collections.emptyMap()).getRootDirectories()) {
-                if (Files.isDirectory(inner)) {
-                    return Files.walk(inner).filter(predicate);
+    @Nullable
+    public String getContentOPFName() {
+        if(contentOPFName == null) {
+            EpubArchive archive = getArchive();
+            String rootfile = null;
+
+            if(archive != null && archive.contains(CONTAINER_XML)) {
+                try (InputStream containerXML = archive.newInputStream(CONTAINER_XML)) {
+                    rootfile = PACKAGE_PARSER.findRootfile(containerXML);
+                } catch (Exception any) {
+                    any.printStackTrace();
                 }
             }
-        } catch (IOException ioException) {
-            ioException.printStackTrace();
+
+            if(rootfile != null) {
+                contentOPFName = EpubArchive.normalize(rootfile);
+            } else {
+                // Fall back to any file named content.opf if container.xml is missing or malformed.
+                contentOPFName = find(name -> getFileName(name).equals("content.opf"))
+                        .findFirst()
+                        .orElse(null);
+            }
         }
 
-        return Stream.empty();
+        return contentOPFName;
+    }
+
+    /**
+     * @return the last segment of the given normalized entry name, such as {@code content.opf} for {@code OEBPS/content.opf}
+     */
+    private static String getFileName(String name) {
+        return name.substring(name.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * @return the normalized directory containing this .epub's content.opf file, which manifest hrefs are relative to
+     */
+    public String getContentOPFDirectory() {
+        String name = getContentOPFName();
+        return name == null ? "" : EpubArchive.parentOf(name);
     }
 
     /**
@@ -137,15 +237,8 @@ public class Epub {
      */
     @Nullable
     public static Path findContentOPFPath(Epub epub) {
-        String containerXML = epub.readContainerXML();
-
-        if(containerXML != null) {
-            int start = containerXML.indexOf(ROOTFILE_START) + ROOTFILE_START.length();
-            int end = containerXML.indexOf("\"", start + 1);
-            return Paths.get(epub.root.toString(), containerXML.substring(start, end));
-        } else {
-            return null;
-        }
+        String name = epub.getContentOPFName();
+        return name == null ? null : Paths.get(epub.root.toString(), name);
     }
 
     public Path getDataDirectory() {
@@ -153,93 +246,39 @@ public class Epub {
         return Paths.get(Rose.ROSE_LIBRARY_DATA_PATH.toString(), fileName.substring(0, fileName.lastIndexOf(".")));
     }
 
-    public Path getImageDirectory() {
-        return Paths.get(getDataDirectory().toString(), "Images");
+    public Path getRoot() {
+        return root;
     }
 
     // time to read image from .epub directly: 161ms
     // time to read after extracting to data directory: 111ms
     /**
-     * Returns the cover image from this .epub file as a {@link BufferedImage}.
+     * Returns the full-resolution cover image from this .epub file as a {@link BufferedImage}.
      *
      * <p>
-     * Once this method is called, the {@link BufferedImage} is cached.
-     * Future calls will return the cached image directly.
+     * The decoded image is not retained by this {@link Epub}.
+     * Prefer {@link draylar.rose.api.cover.CoverCache} for displaying covers, which shares scaled covers between views under a fixed memory budget.
      *
      * @return a {@link BufferedImage} containing the cover image of this .epub, or {@code null} if the cover could not be found/read
      */
     @Nullable
     public BufferedImage readCover() {
-        Path coverLocation = getDataDirectory().resolve("cover.png");
-
-        // Do not continue if the cover image already exists.
-        if(Files.exists(coverLocation)) {
-            return null;
-        }
-
-        // Locate the content.opf file from this .epub book.
-        Optional<Path> contentOpf = find(path -> path.getFileName() != null && path.getFileName().toString().equals("content.opf")).findFirst();
-
-        // abort mission if the container.opf file was not found
-        if(contentOpf.isEmpty()) {
-            return null;
-        }
-
-        // get contents of content.opf file
-        String contentOPF;
-        try {
-            contentOPF = Files.readString(contentOpf.get());
-        } catch (IOException ioException) {
-            ioException.printStackTrace();
-            return null;
-        }
-
-        if(contentOPF != null) {
-            // find cover image location
-            String coverTag = find(contentOPF, "<meta name=\"cover\" content=\"", "\"");
-            if(coverTag != null) {
-                List<String> lines = Arrays.asList(contentOPF.split("\n"));
-                String coverItem = null;
-
-                // Attempt to search for the cover image location by ID.
-                Optional<String> first = lines.stream().filter(line -> line.contains(String.format("id=\"%s\"", coverTag))).findFirst();
-                if(first.isPresent()) {
-                    String found = first.get();
-                    coverItem = find(found, "href=\"", "\"");
-                }
-
-                // In some cases, cover elements are tagged with `properties="cover-image"`.
-                // If coverItem is null, there is a good chance the cover image is stored in this method.
-                if(coverItem == null) {
-                    first = lines.stream().filter(line -> line.contains("properties=\"cover-image\"")).findFirst();
-                    if(first.isPresent()) {
-                        String found = first.get();
-                        coverItem = find(found, "href=\"", "\"");
-                    }
-                }
-
-                if(coverItem != null) {
-                    // If the content.opf file is inside a directory, and refers to a file in the same directory, this coverItem path
-                    //    will refer to the file relative to content.opf.
-                    // To fix this, we prefix the coverItem path with the content.opf path, if it exists.
-                    String directory = contentOpf.get().getParent().toString();
-                    coverItem = directory + (directory.endsWith("/") ? "" : "/") + coverItem;
-
-                    // Locate the cover image.
-                    final String finalCoverItem = coverItem;
-                    Optional<Path> imagePath = find(path -> path.toString() != null && path.toString().equals(finalCoverItem)).findFirst();
-                    if(imagePath.isPresent()) {
-                        // Extract the file to the data directory.
-                        try {
-                            // TODO: different file extensions?
-                            InputStream inputStream = Files.newInputStream(imagePath.get());
-                            BufferedImage read = ImageIO.read(inputStream);
-                            coverImage = read;
-                            return read;
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                        }
-                    }
+        // Locate the cover image through the manifest of the package document.
+        EpubArchive archive = getArchive();
+        PackageDocument packageDocument = getPackageDocument();
+        ManifestEntry cover = packageDocument == null ? null : packageDocument.getCover();
+
+        if(archive != null && cover != null) {
+            // Manifest hrefs are relative to content.opf, so resolve against its directory.
+            String coverItem = packageDocument.resolve(cover);
+
+            // Locate the cover image.
+            if(archive.contains(coverItem)) {
+                // TODO: different file extensions?
+                try (InputStream inputStream = archive.newInputStream(coverItem)) {
+                    return ImageIO.read(inputStream);
+                } catch (Exception e) {
+                    e.printStackTrace();
                 }
             }
         }
@@ -260,118 +299,84 @@ public class Epub {
         }
     }
 
-    @Nullable
-    private String find(String from, String start, String end) {
-        if(!from.contains(start) || !from.contains(end)) {
-            return null;
-        }
-
-        int startIndex = from.indexOf(start) + start.length();
-        int endIndex = from.indexOf(end, startIndex);
-        return from.substring(startIndex, endIndex);
-    }
-
     /**
-     * Loads the metadata for this .epub.
+     * Loads the package document (content.opf) for this .epub.
      *
      * <p>
-     * Metadata is loaded from the .epub content.opf file.
+     * The metadata, manifest and spine are all filled from a single parse of the package document.
      *
-     * @param force whether to force-reload metadata, even if cached values were found
-     * @return true if the metadata could be loaded, otherwise false
+     * @param force whether to force-reload the package document, even if a cached value was found
+     * @return true if the package document could be loaded, otherwise false
      */
-    public boolean loadMetadata(boolean force) {
-        if(this.metadata != null && !force) {
+    public boolean loadPackage(boolean force) {
+        return loadPackage(force, PACKAGE_PARSER);
+    }
+
+    /**
+     * Loads the package document (content.opf) for this .epub with the given {@link PackageParser}.
+     *
+     * @param force whether to force-reload the package document, even if a cached value was found
+     * @param parser parser to read the package document with
+     * @return true if the package document could be loaded, otherwise false
+     */
+    public synchronized boolean loadPackage(boolean force, PackageParser parser) {
+        if(this.packageDocument != null && !force) {
             return true;
         }
 
-        // Load content.opf XML file
-        @Nullable String content_opf = readContentOPF();
+        // Stream the content.opf XML file straight out of the archive
+        EpubArchive archive = getArchive();
+        @Nullable String name = getContentOPFName();
 
-        if(content_opf != null) {
+        if(archive != null && name != null) {
             // Parse XML
-            try {
-                DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-                Document parsed = builder.parse(new InputSource(new StringReader(content_opf)));
-                parsed.normalize();
-                this.metadata = EpubMetadata.from(parsed);
+            try (InputStream contentOPF = archive.newInputStream(name)) {
+                this.packageDocument = parser.parse(contentOPF, getContentOPFDirectory());
+                this.metadata = packageDocument.getMetadata();
+                return true;
             } catch (Exception any) {
                 any.printStackTrace();
-                return false;
             }
         }
 
         return false;
     }
 
-    public void loadManifest(boolean force) {
-        if(this.manifest != null && !force) {
-            return;
+    /**
+     * Loads the metadata for this .epub.
+     *
+     * <p>
+     * Metadata is loaded from the .epub content.opf file.
+     *
+     * @param force whether to force-reload metadata, even if cached values were found
+     * @return true if the metadata could be loaded, otherwise false
+     */
+    public boolean loadMetadata(boolean force) {
+        if(this.metadata != null && !force) {
+            return true;
         }
 
-        manifest = new ArrayList<>();
-
-        // Load content.opf XML file
-        @Nullable String content_opf = readContentOPF();
+        return loadPackage(force);
+    }
 
-        if(content_opf != null) {
-            // Parse XML
-            try {
-                DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-                Document parsed = builder.parse(new InputSource(new StringReader(content_opf)));
-                parsed.normalize();
-
-                // Grab the manifest tag [<manifest>]
-                Element manifestNode = (Element) parsed.getElementsByTagName("manifest").item(0);
-                NodeList manifestChildren = manifestNode.getChildNodes();
-                for(int i = 0; i < manifestChildren.getLength(); i++) {
-                    Node entry = manifestChildren.item(i);
-
-                    if(entry.getNodeType() == Node.ELEMENT_NODE) {
-                        String id = entry.getAttributes().getNamedItem("id").getTextContent();
-                        String href = entry.getAttributes().getNamedItem("href").getTextContent();
-                        String mediaType = entry.getAttributes().getNamedItem("media-type").getTextContent();
-                        manifest.add(new ManifestEntry(id, href, mediaType));
-                    }
-                }
-            } catch (Exception any) {
-                any.printStackTrace();
-            }
-        }
+    public void loadManifest(boolean force) {
+        loadPackage(force);
     }
 
     public void loadSpine(boolean force) {
-        if(this.spine != null && !force) {
-            return;
-        }
-
-        spine = new ArrayList<>();
-
-        // Load content.opf XML file
-        @Nullable String content_opf = readContentOPF();
+        loadPackage(force);
+    }
 
-        if(content_opf != null) {
-            // Parse XML
-            try {
-                DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-                Document parsed = builder.parse(new InputSource(new StringReader(content_opf)));
-                parsed.normalize();
-
-                // Grab the manifest tag [<manifest>]
-                Element manifestNode = (Element) parsed.getElementsByTagName("spine").item(0);
-                NodeList manifestChildren = manifestNode.getChildNodes();
-                for(int i = 0; i < manifestChildren.getLength(); i++) {
-                    Node entry = manifestChildren.item(i);
-
-                    if(entry.getNodeType() == Node.ELEMENT_NODE) {
-                        String idref = entry.getAttributes().getNamedItem("idref").getTextContent();
-                        spine.add(new SpineEntry(idref));
-                    }
-                }
-            } catch (Exception any) {
-                any.printStackTrace();
-            }
+    /**
+     * @return the parsed package document of this .epub, or null if it could not be loaded
+     */
+    @Nullable
+    public PackageDocument getPackageDocument() {
+        if(packageDocument == null) {
+            loadPackage(false);
         }
+
+        return packageDocument;
     }
 
     @NotNull
@@ -385,19 +390,13 @@ public class Epub {
 
     @NotNull
     public List<ManifestEntry> getManifest() {
-        if(manifest == null) {
-            loadManifest(true);
-        }
-
-        return manifest;
+        PackageDocument packageDocument = getPackageDocument();
+        return packageDocument == null ? Collections.emptyList() : packageDocument.getManifest();
     }
 
     public List<SpineEntry> getSpine() {
-        if(spine == null) {
-            loadSpine(true);
-        }
-
-        return spine;
+        PackageDocument packageDocument = getPackageDocument();
+        return packageDocument == null ? Collections.emptyList() : packageDocument.getSpine();
     }
 
     public int getSpineCount() {
@@ -421,49 +420,62 @@ public class Epub {
         return getSpine().get(index);
     }
 
+    /**
+     * @param spineEntry spine entry to locate
+     * @return the archive entry name of the given spine entry's section (such as {@code OEBPS/Text/chapter1.xhtml}), or {@code null} if it is not in the manifest
+     */
+    @Nullable
+    public String getSectionName(SpineEntry spineEntry) {
+        PackageDocument packageDocument = getPackageDocument();
+        ManifestEntry entry = packageDocument == null ? null : packageDocument.getManifestEntry(spineEntry);
+        return entry == null ? null : packageDocument.resolve(entry);
+    }
+
+    /**
+     * Reads the decoded markup of the given spine entry's section, through the shared {@link SectionCache}.
+     *
+     * @param spineEntry spine entry to read the section of
+     * @return the markup of the section, or an empty string if it could not be found/read
+     */
     public String readSection(SpineEntry spineEntry) {
-        Optional<ManifestEntry> first = getManifest().stream().filter(entry -> entry.getId().equals(spineEntry.getIdref())).findFirst();
+        String name = getSectionName(spineEntry);
 
         // If a manifest entry was found that matches the given spine entry, read the contents and return it.
-        if(first.isPresent()) {
-            return read(path -> path.toString().contains(first.get().getHref()));
+        if(name != null) {
+            String section = SectionCache.get().get(this, name, SectionCache.Stage.RAW, () -> {
+                byte[] bytes = readBytes(name);
+                return bytes == null ? null : HTMLHelper.decode(bytes);
+            });
+
+            return section == null ? "" : section;
         }
 
         return "";
     }
 
-    public void extractTemporaryImages() {
-
+    /**
+     * @return the {@link LoadGroup} all background work for this .epub is scheduled under
+     */
+    public LoadGroup getLoadGroup() {
+        return loadGroup;
     }
 
     /**
-     * Extracts the image contents of this .epub to a temporary directory.
+     * Releases the {@link EpubArchive} backing this .epub.
      *
      * <p>
-     * While most operations (reading cover images, loading pages, and getting order) can be done without opening the jar,
-     *  images loaded in HTML files will not properly load, and there is no sane way to bypass this while keeping
-     *  the images in the jar without replacing the paths at runtime and only extracting the images.
+     * The archive will be re-opened if this .epub is accessed again after being closed.
      */
-    private void extractImages() {
-        // TODO: other image types?
-        find(path -> path.toString().endsWith(".png") || path.toString().endsWith(".jpg")).forEach(path -> {
-            new Thread(() -> {
-                try {
-                    String imagesPath = getImageDirectory().toString();
-                    Files.createDirectories(Paths.get(imagesPath));
-                    Path target = Paths.get(imagesPath, path.getFileName().toString());
-                    if(!Files.exists(target)) {
-                        Files.copy(path, target);
-                    }
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }).start();
-        });
-    }
+    @Override
+    public synchronized void close() {
+        if(archive != null) {
+            try {
+                archive.close();
+            } catch (IOException ioException) {
+                ioException.printStackTrace();
+            }
 
-    @Nullable
-    public BufferedImage getCoverImage() {
-        return coverImage;
+            archive = null;
+        }
     }
 }
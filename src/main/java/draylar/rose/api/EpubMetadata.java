@@ -1,9 +1,12 @@
 package draylar.rose.api;
 
+import org.jetbrains.annotations.Nullable;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
+import java.util.Objects;
+
 public class EpubMetadata {
 
     private final String title;
@@ -37,23 +40,26 @@ public class EpubMetadata {
         this.language = language;
     }
 
+    /**
+     * Reads the Dublin Core metadata fields from a namespace-aware package {@link Document}.
+     */
     public static EpubMetadata from(Document content) {
-        Element metadata = (Element) content.getElementsByTagName("metadata").item(0);
-        String title = retrieve(metadata, "dc:title");
-        String creator = retrieve(metadata, "dc:creator");
-        String contributor = retrieve(metadata, "dc:contributor");
-        String identifier = retrieve(metadata, "dc:identifier");
-        String relation = retrieve(metadata, "dc:relation");
-        String publisher = retrieve(metadata, "dc:publisher");
-        String date = retrieve(metadata, "dc:date");
-        String subject = retrieve(metadata, "dc:subject");
-        String language = retrieve(metadata, "dc:language");
+        Element metadata = (Element) content.getElementsByTagNameNS("*", "metadata").item(0);
+        String title = retrieve(metadata, "title");
+        String creator = retrieve(metadata, "creator");
+        String contributor = retrieve(metadata, "contributor");
+        String identifier = retrieve(metadata, "identifier");
+        String relation = retrieve(metadata, "relation");
+        String publisher = retrieve(metadata, "publisher");
+        String date = retrieve(metadata, "date");
+        String subject = retrieve(metadata, "subject");
+        String language = retrieve(metadata, "language");
         return new EpubMetadata(title, creator, contributor, identifier, relation, publisher, date, subject, language);
     }
 
-    private static String retrieve(Element metadata, String tag) {
-        Node item = metadata.getElementsByTagName(tag).item(0);
-        return item == null ? "" : item.getTextContent();
+    private static String retrieve(@Nullable Element metadata, String tag) {
+        Node item = metadata == null ? null : metadata.getElementsByTagNameNS(PackageParser.DUBLIN_CORE_NAMESPACE, tag).item(0);
+        return item == null ? "" : item.getTextContent().trim();
     }
 
     public String getTitle() {
@@ -91,4 +97,17 @@ public class EpubMetadata {
     public String getLanguage() {
         return language;
     }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (!(other instanceof EpubMetadata)) return false;
+        EpubMetadata that = (EpubMetadata) other;
+        return Objects.equals(title, that.title) && Objects.equals(creator, that.creator) && Objects.equals(contributor, that.contributor) && Objects.equals(identifier, that.identifier) && Objects.equals(relation, that.relation) && Objects.equals(publisher, that.publisher) && Objects.equals(date, that.date) && Objects.equals(subject, that.subject) && Objects.equals(language, that.language);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(title, creator, contributor, identifier, relation, publisher, date, subject, language);
+    }
 }
@@ -1,76 +1,196 @@
 package draylar.rose.api;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.w3c.dom.ls.DOMImplementationLS;
-import org.w3c.dom.ls.LSSerializer;
-import org.xml.sax.InputSource;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import java.io.StringReader;
+import javafx.util.Pair;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class HTMLHelper {
 
-    // TODO: this method assumes the given HTML is valid.
+    private static final Pattern ENCODING_DECLARATION = Pattern.compile("(?:<\\?xml[^>]*encoding|<meta[^>]*charset)\\s*=\\s*[\"']?([\\w.:-]+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern STYLE_ATTRIBUTE = Pattern.compile("\\sstyle\\s*=\\s*[\"']", Pattern.CASE_INSENSITIVE);
+
     /**
      * @return a list of body elements from the given HTML document text.
+     * @see BodySplitter
      */
     public static List<String> getBody(String html) {
-        try {
-            List<String> ret = new ArrayList<>();
-
-            // First, locate the <body> content inside the given HTML document.
-            String startTag = getStartBodyTag(html);
-            String bodyText = html.substring(html.indexOf(startTag), html.lastIndexOf("</body>") + "</body>".length());
-
-            DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-            Document parsed = builder.parse(new InputSource(new StringReader(bodyText)));
-            parsed.normalize();
-            Node body = parsed.getElementsByTagName("body").item(0);
-
-            // source: https://stackoverflow.com/questions/3300839/get-a-nodes-inner-xml-as-string-in-java-dom
-            DOMImplementationLS lsImpl = (DOMImplementationLS) body.getOwnerDocument().getImplementation().getFeature("LS", "3.0");
-            LSSerializer lsSerializer = lsImpl.createLSSerializer();
-            lsSerializer.getDomConfig().setParameter("xml-declaration", false);
-            NodeList childNodes = body.getChildNodes();
-            for (int i = 0; i < childNodes.getLength(); i++) {
-                String e = lsSerializer.writeToString(childNodes.item(i));
-
-                // parsing is dumb, and most lines have skewed whitespace.
-                // for more reliable testing, we will simply strip all whitespace on each line
-                String result = Arrays.stream(e.split("\n"))
-                        .map(String::trim)
-                        .filter(line -> !line.isBlank())
-                        .collect(Collectors.joining("\n"));
-
-                // Append the trimmed result to the list
-                if(!result.isBlank()) {
-                    ret.add(result);
-                }
-            }
-            // end source
+        List<String> ret = new ArrayList<>();
+        BodySplitter.split(html, ret::add);
+        return ret;
+    }
+
+    /**
+     * Decodes the given HTML or XHTML document.
+     *
+     * <p>
+     * The encoding is taken from a byte order mark, then from an XML declaration or {@code <meta>} charset near the start of the document,
+     * and is UTF-8 otherwise. Invalid byte sequences are replaced instead of failing the whole document.
+     *
+     * @param bytes raw document contents
+     * @return the document text
+     */
+    public static String decode(byte[] bytes) {
+        if (bytes.length >= 3 && (bytes[0] & 0xFF) == 0xEF && (bytes[1] & 0xFF) == 0xBB && (bytes[2] & 0xFF) == 0xBF) {
+            return new String(bytes, 3, bytes.length - 3, StandardCharsets.UTF_8);
+        }
+
+        if (bytes.length >= 2 && (bytes[0] & 0xFF) == 0xFE && (bytes[1] & 0xFF) == 0xFF) {
+            return new String(bytes, 2, bytes.length - 2, StandardCharsets.UTF_16BE);
+        }
 
-            return ret;
-        } catch (Exception e) {
-            e.printStackTrace();
+        if (bytes.length >= 2 && (bytes[0] & 0xFF) == 0xFF && (bytes[1] & 0xFF) == 0xFE) {
+            return new String(bytes, 2, bytes.length - 2, StandardCharsets.UTF_16LE);
+        }
+
+        // Encoding declarations only use ASCII, so the start of the document can be read as Latin-1 to find them.
+        String prefix = new String(bytes, 0, Math.min(bytes.length, 1024), StandardCharsets.ISO_8859_1);
+        Matcher declaration = ENCODING_DECLARATION.matcher(prefix);
+        Charset charset = StandardCharsets.UTF_8;
+        if (declaration.find()) {
+            try {
+                charset = Charset.forName(declaration.group(1));
+            } catch (IllegalArgumentException exception) {
+                System.out.printf("Unknown encoding %s, falling back to UTF-8.%n", declaration.group(1));
+            }
         }
 
-        return Collections.emptyList();
+        return new String(bytes, charset);
     }
 
-    public static String getTemplate(String html) {
+    /**
+     * Splits the given HTML document around the content of its body, so pages can be built by placing their body markup between the two halves.
+     *
+     * @return the document up to and including the start body tag, and the document from the end body tag onwards
+     */
+    public static Pair<String, String> getTemplate(String html) {
         String startTag = getStartBodyTag(html);
-        int endIndex = html.indexOf(startTag) + startTag.length();
+        int startIndex = html.indexOf(startTag);
+        if (startIndex == -1) {
+            return new Pair<>("", "");
+        }
+
+        int endIndex = startIndex + startTag.length();
         int restartIndex = html.lastIndexOf("</body>");
-        return html.substring(0, endIndex) + "%s" + html.substring(restartIndex);
+        return new Pair<>(html.substring(0, endIndex), restartIndex < endIndex ? "" : html.substring(restartIndex));
+    }
+
+    /**
+     * Keeps only part of the text of the given element, along with all of its markup.
+     *
+     * <p>
+     * Offsets count the characters of the element's text content the same way the browser's {@code textContent} does:
+     * tags and comments are not counted, and an entity counts as the character it stands for.
+     * A slice which does not start at the beginning of the element continues a paragraph from a previous page,
+     * so the first-line indent of the element is removed.
+     *
+     * @param element markup of a single element
+     * @param start character offset of the first character to keep
+     * @param end character offset of the first character to drop after {@code start}
+     * @return the markup of the element, with only the text between the given offsets
+     */
+    public static String sliceText(String element, int start, int end) {
+        StringBuilder ret = new StringBuilder(element.length());
+        int offset = 0;
+        int index = 0;
+
+        while (index < element.length()) {
+            char c = element.charAt(index);
+
+            // Markup is always kept, so the slice keeps the structure and styling of the element.
+            if (c == '<') {
+                int close = getMarkupEnd(element, index);
+                ret.append(element, index, close);
+                index = close;
+                continue;
+            }
+
+            int next = index + 1;
+            int characters = 1;
+            if (c == '&') {
+                int semicolon = element.indexOf(';', index);
+                if (semicolon != -1 && semicolon - index <= 32) {
+                    next = semicolon + 1;
+                    characters = getEntityLength(element.substring(index + 1, semicolon));
+                }
+            } else if (c == '\r' && element.startsWith("\r\n", index)) {
+                // The HTML parser normalizes line endings.
+                next = index + 2;
+            }
+
+            if (offset >= start && offset < end) {
+                ret.append(element, index, next);
+            }
+
+            offset += characters;
+            index = next;
+        }
+
+        return start > 0 ? removeIndent(ret.toString()) : ret.toString();
+    }
+
+    private static int getMarkupEnd(String html, int index) {
+        if (html.startsWith("<!--", index)) {
+            int end = html.indexOf("-->", index + 4);
+            return end == -1 ? html.length() : end + 3;
+        }
+
+        // Attribute values can contain '>', so quoted values are skipped.
+        char quote = 0;
+        for (int i = index + 1; i < html.length(); i++) {
+            char c = html.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                return i + 1;
+            }
+        }
+
+        return html.length();
+    }
+
+    private static int getEntityLength(String entity) {
+        if (entity.startsWith("#")) {
+            try {
+                int codePoint = entity.startsWith("#x") || entity.startsWith("#X")
+                        ? Integer.parseInt(entity.substring(2), 16)
+                        : Integer.parseInt(entity.substring(1));
+                return Character.isValidCodePoint(codePoint) ? Character.charCount(codePoint) : 1;
+            } catch (NumberFormatException exception) {
+                return entity.length() + 2;
+            }
+        }
+
+        // Only a plain name is an entity, anything else is a literal '&' followed by text.
+        for (int i = 0; i < entity.length(); i++) {
+            if (!Character.isLetterOrDigit(entity.charAt(i))) {
+                return entity.length() + 2;
+            }
+        }
+
+        return 1;
+    }
+
+    private static String removeIndent(String element) {
+        if (!element.startsWith("<") || element.startsWith("</") || element.startsWith("<!")) {
+            return element;
+        }
+
+        int end = getMarkupEnd(element, 0);
+        String tag = element.substring(0, end);
+        Matcher style = STYLE_ATTRIBUTE.matcher(tag);
+        String replaced = style.find()
+                ? tag.substring(0, style.end()) + "text-indent: 0; " + tag.substring(style.end())
+                : tag.replaceFirst("\\s*/?>$", " style=\"text-indent: 0\"$0");
+        return replaced + element.substring(end);
     }
 
     public static String getStartBodyTag(String html) {
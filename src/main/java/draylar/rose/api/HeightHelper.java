@@ -1,163 +1,269 @@
 package draylar.rose.api;
 
-import draylar.rose.Rose;
-import draylar.rose.api.book.SpineEntry;
+import draylar.rose.api.page.PageRange;
+import draylar.rose.api.page.Paginator;
+import draylar.rose.api.web.WebViewPool;
 import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
 import javafx.concurrent.Worker;
+import javafx.scene.web.WebEngine;
 import javafx.scene.web.WebView;
-import javafx.util.Pair;
 import netscape.javascript.JSObject;
 
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
-public class HeightHelper {
+/**
+ * {@link Paginator} which measures pages in a WebView, using the same engine and stylesheet as the reader.
+ *
+ * <p>
+ * Each section is measured in its own WebView checked out of the {@link WebViewPool}, with a load listener that only belongs to that section.
+ * Several sections can be loading at once without their loads or results being mixed up.
+ */
+public class HeightHelper implements Paginator {
 
-    private final static WebView throwaway = new WebView();
+    /**
+     * Number of body elements passed into the pagination script at once.
+     */
+    private static final int BATCH_SIZE = 64;
+
+    /**
+     * JS functions for calculating pages from body elements, which are appended in batches through {@code append(first, batch)}.
+     * Pages are reported back to the {@link JavaBridge} as element index and character offset ranges as soon as they are finished.
+     */
+    private static final String PAGINATION_SCRIPT = """
+            var elements = 0
+            var container = null
+            var start = null
+
+            // Elements are appended to a single live container, and its height is read once per append.
+            // overflow: hidden keeps the margins of the first and last element inside of the container's height.
+            function createContainer() {
+                document.body.innerHTML = ""
+                const container = document.createElement("div")
+                container.style.width = width + "px"
+                container.style.overflow = "hidden"
+                document.body.appendChild(container)
+                return container
+            }
+
+            function fits(container) {
+                return container.offsetHeight <= height
+            }
+
+            // Returns a copy of the given node which only keeps the text before (head) or after (tail) the given character offset.
+            function cut(node, offset, head) {
+                const clone = node.cloneNode(true)
+                const texts = []
+                if (clone.nodeType === Node.TEXT_NODE) {
+                    texts.push(clone)
+                } else {
+                    const walker = document.createTreeWalker(clone, NodeFilter.SHOW_TEXT)
+                    while (walker.nextNode()) {
+                        texts.push(walker.currentNode)
+                    }
+                }
+
+                var seen = 0
+                for (const text of texts) {
+                    const length = text.data.length
+                    if (head) {
+                        text.data = seen >= offset ? "" : text.data.substring(0, offset - seen)
+                    } else {
+                        text.data = seen + length <= offset ? "" : text.data.substring(Math.max(0, offset - seen))
+                    }
+                    seen += length
+                }
+
+                // The rest of a paragraph continues the same paragraph, so it should not be indented again.
+                if (!head && clone.nodeType === Node.ELEMENT_NODE) {
+                    clone.style.textIndent = "0"
+                }
+
+                return clone
+            }
+
+            // Binary-searches the largest amount of text from the given node that fits on an empty page.
+            // Returns -1 if not even a single character fits.
+            function findSplit(container, node) {
+                const text = node.textContent
+                var low = 1
+                var high = text.length - 1
+                var best = -1
+
+                while (low <= high) {
+                    const middle = (low + high) >> 1
+                    container.innerHTML = ""
+                    container.appendChild(cut(node, middle, true))
+                    if (fits(container)) {
+                        best = middle
+                        low = middle + 1
+                    } else {
+                        high = middle - 1
+                    }
+                }
+
+                // Prefer to break between words.
+                if (best > 0) {
+                    const space = text.lastIndexOf(" ", best)
+                    if (space > 0) {
+                        best = space + 1
+                    }
+                }
+
+                return best
+            }
+
+            // Reports the page which is being filled, ending right before the given position.
+            function finishPage(element, offset) {
+                if (start !== null) {
+                    java.addPage(start.element, start.offset, element, offset)
+                    start = null
+                }
+                container.innerHTML = ""
+            }
+
+            function append(first, batch) {
+                if (container === null) {
+                    container = createContainer()
+                }
 
-    public HeightHelper() {
-        throwaway.getEngine().setUserStyleSheetLocation(Rose.class.getClassLoader().getResource("style/main.css").toString());
+                for (var i = 0; i < batch.length; i++) {
+                    place({ element: first + i, offset: 0, html: batch[i], node: null })
+                    elements++
+                }
+            }
+
+            function place(element) {
+                const queue = [element]
+                while (queue.length !== 0) {
+                    const item = queue.shift()
+
+                    // Images are always on a new page, because offsetHeight does not properly return their height
+                    if (item.node === null && item.html.includes("<img")) {
+                        finishPage(item.element, 0)
+                        java.addPage(item.element, 0, item.element + 1, 0)
+                        continue
+                    }
+
+                    // Append the element to the live container, and check if the page still fits.
+                    const count = container.childNodes.length
+                    if (item.node === null) {
+                        container.insertAdjacentHTML("beforeend", item.html)
+                    } else {
+                        container.appendChild(item.node)
+                    }
+
+                    if (fits(container)) {
+                        if (start === null) {
+                            start = { element: item.element, offset: item.offset }
+                        }
+                        continue
+                    }
+
+                    // The element overflows the page. Take it back out, finish the current page, and try again on an empty page.
+                    const added = Array.prototype.slice.call(container.childNodes, count)
+                    added.forEach(node => container.removeChild(node))
+                    if (start !== null) {
+                        finishPage(item.element, item.offset)
+                        queue.unshift(item)
+                        continue
+                    }
+
+                    // The element does not fit on an empty page either, so it is split at the last position that fits.
+                    // The rest of the element goes back into the queue, and is split again if it is still too large.
+                    const node = added.length === 1 ? added[0] : null
+                    const split = node === null ? -1 : findSplit(container, node)
+                    container.innerHTML = ""
+                    if (split <= 0) {
+                        java.addPage(item.element, item.offset, item.element + 1, 0)
+                        continue
+                    }
+
+                    java.addPage(item.element, item.offset, item.element, item.offset + split)
+                    queue.unshift({ element: item.element, offset: item.offset + split, html: null, node: cut(node, split, false) })
+                }
+            }
+
+            function finish() {
+                if (container !== null) {
+                    finishPage(elements, 0)
+                }
+            }
+            """;
+
+    @Override
+    public CompletableFuture<List<PageRange>> calculatePages(List<String> elements, double height, double width) {
+        return WebViewPool.get().checkOut().thenCompose(view -> measure(view, elements, height, width));
     }
 
     /**
-     * Returns a {@link CompletableFuture} providing a {@code String[]}, where each element represents a single page from the provided HTML content.
-     *
-     * <p>
-     * Each page will approximately span the height of the screen, but will not surpass it.
-     *
-     * @param entry current TOC entry being operated on for return context
-     * @param html full HTML content to process into pages
-     * @param height height of each page
-     * @param width width of each page
-     * @return  a {@link CompletableFuture} that provides pages derived from the passed in HTML document
+     * Loads a blank document into the given WebView and paginates the given elements in it.
+     * The WebView is checked back into the pool once the pages have been calculated, or the load failed.
      */
-    public CompletableFuture<Pair<SpineEntry, String[]>> calculatePages(SpineEntry entry, String html, double height, double width) {
-        CompletableFuture<Pair<SpineEntry, String[]>> ret = new CompletableFuture<>();
-        List<String> bodyElements = HTMLHelper.getBody(html);
-
-        throwaway.getEngine().getLoadWorker().stateProperty().addListener((value, old, newState) -> {
-            if(newState == Worker.State.SUCCEEDED) {
-                // Override the standard JavaScript log method to redirect to our Java Bridge.
-                throwaway.getEngine().executeScript("console.log = function(message)\n" +
-                        "{\n" +
-                        "    java.log(message);\n" +
-                        "};");
-
-                // Define the JS functions for calculating pages from passed in HTML content.
-                throwaway.getEngine().executeScript(
-                        """
-                                var splitData = ""
-                                var fragment = document.createDocumentFragment()
-                                                        
-                                function loadData() {
-                                    splitData = allData.split("%and%");
-                                }
-                                                        
-                                function getSize(data) { // data is a list of string tags
-                                     // clear current body
-                                     document.body.innerHTML = ""
-                                    
-                                     // add
-                                    const d = document.createElement("div")
-                                    for (var i = 0; i < data.length; i++) {
-                                        d.innerHTML += data[i]
-                                    }
-                                    fragment.appendChild(d)
-                                    
-                                    // reset style
-                                    d.style.height = "";
-                                    d.style.width = width;
-                                    
-                                    document.body.appendChild(fragment)
-                                    return d.offsetHeight;
-                                }
-                                                        
-                                function splitIntoPages() {
-                                    const pages = [];
-                                   
-                                    // We currently have a list of ALL body tags in an .html document,
-                                    // and need to split them up into pages.
-                                    // To accomplish this, we loop over the documents, adding elements one-by-one until we hit a max size.
-                                    // After the max size is hit, the page is stored, and the next elements are added.
-                                   
-                                    var currentElements = []
-                                    while(splitData.length !== 0) {
-                                        // test pushing item onto the array
-                                        // if it overflows, we know this page is done.
-                                        // otherwise, save the change
-                                        const copy = [...currentElements];
-                                        const element = splitData[0];
-                                        copy.push(element);
-                                        const size = getSize(copy)
-                                                                
-                                        splitData.splice(0, 1);
-                                                                
-                                        // The size of the elements is less than 500. We can append to the current element.
-                                        // This was the last element. Return it now!
-                                        if(splitData.length == 0) {
-                                            // TODO: overflow on the last page?
-                                            currentElements.push(element);
-                                            pages.push(currentElements.join(""))
-                                            return pages.join("%page%");
-                                        }
-                                                                
-                                        // Still have elements to process and we are under 500 length. Append it to the current list.
-                                        else if (size < height) {
-                                            
-                                            // Images are always on a new page, because offsetHeight does not properly return their height
-                                            if(element.includes("img")) {
-                                                
-                                                // no elements so far, stop the page here
-                                                if(currentElements.length == 0) {
-                                                    currentElements.push(element);
-                                                    pages.push(currentElements.join(""));
-                                                    currentElements = []
-                                                }
-                                                
-                                                // already has an element, save that as a page and keep going
-                                                else {
-                                                    pages.push(currentElements.join(""));
-                                                    currentElements = []
-                                                    splitData.unshift(element); // re-add element for next iteration
-                                                }
-                                                
-                                            } else {
-                                                currentElements.push(element);
-                                            }
-                                        }
-                                       
-                                        // Over 500 with more elements to go-- push and go again. Do not append the current element to prevent overflow.
-                                        else {
-                                            pages.push(currentElements.join(""))
-                                            currentElements = [] // clear current elements
-                                        }
-                                    }
-                                    
-                                    return pages.join("%page%")
-                                }
-                                """
-                );
-
-                Platform.runLater(() -> {
+    private static CompletableFuture<List<PageRange>> measure(WebView view, List<String> elements, double height, double width) {
+        CompletableFuture<List<PageRange>> ret = new CompletableFuture<>();
+        WebEngine engine = view.getEngine();
+
+        // The listener belongs to this request only, and is removed as soon as its load has finished.
+        ChangeListener<Worker.State> listener = new ChangeListener<>() {
+            @Override
+            public void changed(ObservableValue<? extends Worker.State> value, Worker.State old, Worker.State newState) {
+                if(newState != Worker.State.SUCCEEDED && newState != Worker.State.FAILED) {
+                    return;
+                }
+
+                engine.getLoadWorker().stateProperty().removeListener(this);
+
+                try {
+                    if(newState == Worker.State.FAILED) {
+                        throw new IllegalStateException("Failed to load measurement page", engine.getLoadWorker().getException());
+                    }
+
+                    // Override the standard JavaScript log method to redirect to our Java Bridge.
+                    engine.executeScript("console.log = function(message)\n" +
+                            "{\n" +
+                            "    java.log(message);\n" +
+                            "};");
+
+                    // Define the JS functions for calculating pages from passed in HTML content.
+                    engine.executeScript(PAGINATION_SCRIPT);
+
                     // initialize data
-                    JSObject window = (JSObject) throwaway.getEngine().executeScript("window");
-                    window.setMember("java", new JavaBridge());
-                    window.setMember("allData", String.join("%and%", bodyElements)); // TODO: better way to pass a list?
+                    JavaBridge bridge = new JavaBridge();
+                    JSObject window = (JSObject) engine.executeScript("window");
+                    window.setMember("java", bridge);
                     window.setMember("height", height);
                     window.setMember("width", width);
 
-                    // call methods to calculate size
-                    throwaway.getEngine().executeScript("loadData();");
-                    String s = throwaway.getEngine().executeScript("splitIntoPages()").toString();
-                    String[] result = s.split("%page%");
-                    ret.complete(new Pair<>(entry, result));
-                    System.out.println("hi");
-                });
+                    // Stream the elements into the script in batches, instead of packing them into a single string.
+                    for (int first = 0; first < elements.size(); first += BATCH_SIZE) {
+                        List<String> batch = elements.subList(first, Math.min(elements.size(), first + BATCH_SIZE));
+                        JSObject array = (JSObject) engine.executeScript("[]");
+                        for (int i = 0; i < batch.size(); i++) {
+                            array.setSlot(i, batch.get(i));
+                        }
+
+                        window.call("append", first, array);
+                    }
+
+                    window.call("finish");
+                    List<PageRange> pages = bridge.getPages();
+                    ret.complete(pages.isEmpty() ? List.of(PageRange.of(0, 0)) : pages);
+                } catch (RuntimeException exception) {
+                    ret.completeExceptionally(exception);
+                } finally {
+                    // The next request loads new content into the WebView, which should not happen from inside of this load's listener.
+                    Platform.runLater(() -> WebViewPool.get().checkIn(view));
+                }
             }
-        });
+        };
+
+        engine.getLoadWorker().stateProperty().addListener(listener);
 
         // force-load the webview
-        throwaway.getEngine().loadContent("");
+        engine.loadContent("");
 
         return ret;
     }
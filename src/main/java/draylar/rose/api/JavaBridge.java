@@ -1,9 +1,39 @@
 package draylar.rose.api;
 
+import draylar.rose.api.page.PageRange;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Object exposed to the JavaScript of a WebView as {@code java}.
+ *
+ * <p>
+ * Besides redirecting {@code console.log}, the bridge receives the page boundaries found by the pagination script.
+ * Pages are reported as element index and character offset ranges (see {@link PageRange}), so no markup is copied back out of the WebView.
+ */
 public class JavaBridge {
 
+    private final List<PageRange> pages = new ArrayList<>();
+
     public void log(String text)
     {
         System.out.println(text);
     }
+
+    /**
+     * Called by the pagination script for each page, in order.
+     *
+     * @see PageRange#PageRange(int, int, int, int)
+     */
+    public void addPage(int startElement, int startOffset, int endElement, int endOffset) {
+        pages.add(new PageRange(startElement, startOffset, endElement, endOffset));
+    }
+
+    /**
+     * @return the pages reported by the pagination script so far
+     */
+    public List<PageRange> getPages() {
+        return pages;
+    }
 }
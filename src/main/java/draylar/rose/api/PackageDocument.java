@@ -0,0 +1,173 @@
+package draylar.rose.api;
+
+import draylar.rose.api.archive.EpubArchive;
+import draylar.rose.api.book.ManifestEntry;
+import draylar.rose.api.book.SpineEntry;
+import org.jetbrains.annotations.Nullable;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The parsed contents of an .epub package document (content.opf).
+ *
+ * <p>
+ * The metadata, manifest and spine are all filled from a single parse of the package document.
+ * Manifest entries are additionally indexed by id, so resolving a {@link SpineEntry} to its {@link ManifestEntry} is O(1).
+ */
+public class PackageDocument {
+
+    private final String directory;
+    private final EpubMetadata metadata;
+    private final List<ManifestEntry> manifest;
+    private final Map<String, ManifestEntry> manifestById;
+    private final List<SpineEntry> spine;
+    @Nullable private final String coverId;
+
+    public PackageDocument(String directory, EpubMetadata metadata, List<ManifestEntry> manifest, List<SpineEntry> spine, @Nullable String coverId) {
+        this.directory = directory;
+        this.metadata = metadata;
+        this.manifest = Collections.unmodifiableList(manifest);
+        this.spine = Collections.unmodifiableList(spine);
+        this.coverId = coverId;
+
+        this.manifestById = new HashMap<>(manifest.size() * 2);
+        for (ManifestEntry entry : manifest) {
+            manifestById.putIfAbsent(entry.getId(), entry);
+        }
+    }
+
+    /**
+     * Reads a {@link PackageDocument} from a namespace-aware W3C {@link Document}.
+     *
+     * @see PackageParser#DOM
+     */
+    public static PackageDocument from(Document content, String directory) {
+        EpubMetadata metadata = EpubMetadata.from(content);
+        List<ManifestEntry> manifest = new ArrayList<>();
+        List<SpineEntry> spine = new ArrayList<>();
+        String coverId = null;
+
+        // <meta name="cover" content="cover-image-id"/>
+        NodeList metas = content.getElementsByTagNameNS("*", "meta");
+        for (int i = 0; i < metas.getLength(); i++) {
+            Element meta = (Element) metas.item(i);
+            if (meta.getAttribute("name").equals("cover")) {
+                coverId = meta.getAttribute("content");
+                break;
+            }
+        }
+
+        // <manifest><item id="" href="" media-type=""/></manifest>
+        Node manifestNode = content.getElementsByTagNameNS("*", "manifest").item(0);
+        if (manifestNode != null) {
+            for (Element item : childElements(manifestNode)) {
+                String properties = item.getAttribute("properties");
+                manifest.add(new ManifestEntry(item.getAttribute("id"), item.getAttribute("href"), item.getAttribute("media-type"), properties));
+
+                // EPUB 3 books tag their cover with properties="cover-image" instead of a <meta> element.
+                if (coverId == null && properties.contains("cover-image")) {
+                    coverId = item.getAttribute("id");
+                }
+            }
+        }
+
+        // <spine><itemref idref=""/></spine>
+        Node spineNode = content.getElementsByTagNameNS("*", "spine").item(0);
+        if (spineNode != null) {
+            for (Element itemref : childElements(spineNode)) {
+                spine.add(new SpineEntry(itemref.getAttribute("idref")));
+            }
+        }
+
+        return new PackageDocument(directory, metadata, manifest, spine, coverId);
+    }
+
+    private static List<Element> childElements(Node parent) {
+        List<Element> elements = new ArrayList<>();
+        NodeList children = parent.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            Node child = children.item(i);
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                elements.add((Element) child);
+            }
+        }
+
+        return elements;
+    }
+
+    /**
+     * @param id manifest item id
+     * @return the {@link ManifestEntry} with the given id, or {@code null} if none exists
+     */
+    @Nullable
+    public ManifestEntry getManifestEntry(String id) {
+        return manifestById.get(id);
+    }
+
+    /**
+     * @param entry spine entry to resolve
+     * @return the {@link ManifestEntry} the given spine entry refers to, or {@code null} if it does not exist
+     */
+    @Nullable
+    public ManifestEntry getManifestEntry(SpineEntry entry) {
+        return manifestById.get(entry.getIdref());
+    }
+
+    /**
+     * @param entry manifest entry to resolve
+     * @return the normalized archive entry name of the given manifest entry
+     */
+    public String resolve(ManifestEntry entry) {
+        return EpubArchive.resolve(directory, entry.getHref());
+    }
+
+    /**
+     * @return the manifest entry of the cover image, or {@code null} if this package does not declare one
+     */
+    @Nullable
+    public ManifestEntry getCover() {
+        return coverId == null ? null : manifestById.get(coverId);
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public EpubMetadata getMetadata() {
+        return metadata;
+    }
+
+    public List<ManifestEntry> getManifest() {
+        return manifest;
+    }
+
+    public List<SpineEntry> getSpine() {
+        return spine;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (!(other instanceof PackageDocument)) return false;
+        PackageDocument that = (PackageDocument) other;
+        return directory.equals(that.directory)
+                && metadata.equals(that.metadata)
+                && manifest.equals(that.manifest)
+                && spine.equals(that.spine)
+                && Objects.equals(coverId, that.coverId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(directory, metadata, manifest, spine, coverId);
+    }
+}
@@ -0,0 +1,232 @@
+package draylar.rose.api;
+
+import draylar.rose.api.book.ManifestEntry;
+import draylar.rose.api.book.SpineEntry;
+import org.jetbrains.annotations.Nullable;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Strategies for parsing the .epub package document (content.opf) and container.xml file.
+ *
+ * <p>
+ * {@link #DOM} builds a full W3C document before reading it, while {@link #STREAMING} pulls through the document with StAX,
+ * only looks at the elements it needs, and stops as soon as the {@code <spine>} has been read.
+ * Both strategies are namespace-aware: Dublin Core fields are matched by namespace URI instead of by the {@code dc:} prefix.
+ *
+ * <p>
+ * The strategy used by {@link Epub} can be selected with the {@code rose.packageParser} system property ({@code dom} or {@code streaming}).
+ */
+public enum PackageParser {
+
+    DOM {
+        private final ThreadLocal<DocumentBuilder> builder = ThreadLocal.withInitial(() -> {
+            try {
+                DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+                factory.setNamespaceAware(true);
+                return factory.newDocumentBuilder();
+            } catch (ParserConfigurationException exception) {
+                throw new IllegalStateException(exception);
+            }
+        });
+
+        @Override
+        public PackageDocument parse(InputStream contentOPF, String directory) throws Exception {
+            Document parsed = builder.get().parse(contentOPF);
+            parsed.normalize();
+            return PackageDocument.from(parsed, directory);
+        }
+
+        @Nullable
+        @Override
+        public String findRootfile(InputStream containerXML) throws Exception {
+            Document parsed = builder.get().parse(containerXML);
+            NodeList rootfiles = parsed.getElementsByTagNameNS(CONTAINER_NAMESPACE, "rootfile");
+            return rootfiles.getLength() == 0 ? null : ((Element) rootfiles.item(0)).getAttribute("full-path");
+        }
+    },
+
+    STREAMING {
+        @Override
+        public PackageDocument parse(InputStream contentOPF, String directory) throws Exception {
+            XMLStreamReader reader = newReader(contentOPF);
+            Map<String, String> dublinCore = new HashMap<>();
+            List<ManifestEntry> manifest = new ArrayList<>();
+            List<SpineEntry> spine = new ArrayList<>();
+            String coverId = null;
+            String coverImageId = null;
+
+            try {
+                parsing:
+                while (reader.hasNext()) {
+                    int event = reader.next();
+
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        String namespace = reader.getNamespaceURI();
+
+                        // <dc:title>, <dc:creator>, ... only the first value of each field is kept.
+                        if (DUBLIN_CORE_NAMESPACE.equals(namespace)) {
+                            String name = reader.getLocalName();
+                            if (!dublinCore.containsKey(name)) {
+                                dublinCore.put(name, readText(reader));
+                            }
+                        } else if (isPackageNamespace(namespace)) {
+                            switch (reader.getLocalName()) {
+                                case "meta" -> {
+                                    if (coverId == null && "cover".equals(reader.getAttributeValue(null, "name"))) {
+                                        coverId = reader.getAttributeValue(null, "content");
+                                    }
+                                }
+                                case "item" -> {
+                                    String id = attribute(reader, "id");
+                                    String properties = attribute(reader, "properties");
+                                    manifest.add(new ManifestEntry(id, attribute(reader, "href"), attribute(reader, "media-type"), properties));
+
+                                    // EPUB 3 books tag their cover with properties="cover-image" instead of a <meta> element.
+                                    if (coverImageId == null && properties.contains("cover-image")) {
+                                        coverImageId = id;
+                                    }
+                                }
+                                case "itemref" -> spine.add(new SpineEntry(attribute(reader, "idref")));
+                            }
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        // Everything we need has been read once the spine is closed. Skip the guide, bindings, etc.
+                        if (isPackageNamespace(reader.getNamespaceURI()) && reader.getLocalName().equals("spine")) {
+                            break parsing;
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+
+            EpubMetadata metadata = new EpubMetadata(
+                    dublinCore.getOrDefault("title", ""),
+                    dublinCore.getOrDefault("creator", ""),
+                    dublinCore.getOrDefault("contributor", ""),
+                    dublinCore.getOrDefault("identifier", ""),
+                    dublinCore.getOrDefault("relation", ""),
+                    dublinCore.getOrDefault("publisher", ""),
+                    dublinCore.getOrDefault("date", ""),
+                    dublinCore.getOrDefault("subject", ""),
+                    dublinCore.getOrDefault("language", ""));
+
+            return new PackageDocument(directory, metadata, manifest, spine, coverId == null ? coverImageId : coverId);
+        }
+
+        @Nullable
+        @Override
+        public String findRootfile(InputStream containerXML) throws Exception {
+            XMLStreamReader reader = newReader(containerXML);
+
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT
+                            && CONTAINER_NAMESPACE.equals(reader.getNamespaceURI())
+                            && reader.getLocalName().equals("rootfile")) {
+                        return reader.getAttributeValue(null, "full-path");
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+
+            return null;
+        }
+    };
+
+    public static final String DUBLIN_CORE_NAMESPACE = "http://purl.org/dc/elements/1.1/";
+    public static final String PACKAGE_NAMESPACE = "http://www.idpf.org/2007/opf";
+    public static final String CONTAINER_NAMESPACE = "urn:oasis:names:tc:opendocument:xmlns:container";
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    /**
+     * Parses a package document.
+     *
+     * @param contentOPF stream over the content.opf file
+     * @param directory normalized archive directory containing the content.opf file, which manifest hrefs are relative to
+     * @return the parsed {@link PackageDocument}
+     * @throws Exception if the package document could not be parsed
+     */
+    public abstract PackageDocument parse(InputStream contentOPF, String directory) throws Exception;
+
+    /**
+     * Reads the location of the package document from a container.xml file.
+     *
+     * @param containerXML stream over the container.xml file
+     * @return the {@code full-path} attribute of the first {@code <rootfile>}, or {@code null} if none was declared
+     * @throws Exception if the container.xml file could not be parsed
+     */
+    @Nullable
+    public abstract String findRootfile(InputStream containerXML) throws Exception;
+
+    /**
+     * @return the {@link PackageParser} selected by the {@code rose.packageParser} system property, defaulting to {@link #STREAMING}
+     */
+    public static PackageParser getDefault() {
+        String selected = System.getProperty("rose.packageParser", STREAMING.name());
+
+        try {
+            return valueOf(selected.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException exception) {
+            System.out.printf("Unknown package parser %s, falling back to %s.%n", selected, STREAMING);
+            return STREAMING;
+        }
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    private static XMLStreamReader newReader(InputStream stream) throws XMLStreamException {
+        synchronized (FACTORY) {
+            return FACTORY.createXMLStreamReader(stream);
+        }
+    }
+
+    // Some older package documents omit the OPF namespace entirely, so elements without a namespace are accepted too.
+    private static boolean isPackageNamespace(@Nullable String namespace) {
+        return namespace == null || namespace.isEmpty() || namespace.equals(PACKAGE_NAMESPACE);
+    }
+
+    private static String attribute(XMLStreamReader reader, String name) {
+        String value = reader.getAttributeValue(null, name);
+        return value == null ? "" : value;
+    }
+
+    // Collects the text of the current element, skipping over any nested elements.
+    private static String readText(XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder text = new StringBuilder();
+        int depth = 1;
+
+        while (depth > 0 && reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT -> depth++;
+                case XMLStreamConstants.END_ELEMENT -> depth--;
+                case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA, XMLStreamConstants.SPACE -> text.append(reader.getText());
+            }
+        }
+
+        return text.toString().trim();
+    }
+}
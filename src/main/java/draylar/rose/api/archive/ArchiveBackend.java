@@ -0,0 +1,67 @@
+package draylar.rose.api.archive;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Available {@link EpubArchive} implementations.
+ *
+ * <p>
+ * {@link #FILE_SYSTEM} opens books through the JDK zip {@link java.nio.file.FileSystem}, which builds a full file system over the archive and
+ * copies entries through stream buffers. {@link #MAPPED} memory-maps the book and only parses its central directory
+ * (see {@link MappedZipArchive}), which is quicker to open and reads entries straight out of the mapping. Books the mapped reader does not
+ * support (such as zip64 archives) are opened through the file system instead.
+ *
+ * <p>
+ * A mapping is only released once its archive has been garbage collected, not when it is closed. On Windows, a mapped book therefore stays
+ * locked (it can not be deleted or replaced in the library folder) for a while after it was closed. Truncating a mapped book makes further
+ * reads from it fail.
+ *
+ * <p>
+ * The backend used for every book can be selected with the {@code rose.archive} system property ({@code file_system} or {@code mapped}).
+ */
+public enum ArchiveBackend {
+
+    FILE_SYSTEM {
+        @Override
+        public EpubArchive open(Path file) throws IOException {
+            return ZipFileSystemArchive.open(file);
+        }
+    },
+
+    MAPPED {
+        @Override
+        public EpubArchive open(Path file) throws IOException {
+            try {
+                return MappedZipArchive.open(file);
+            } catch (IOException ioException) {
+                System.out.printf("Could not map %s (%s), falling back to %s.%n", file.getFileName(), ioException.getMessage(), FILE_SYSTEM);
+                return FILE_SYSTEM.open(file);
+            }
+        }
+    };
+
+    /**
+     * Opens the .epub file at the given {@link Path} and indexes all of its entries.
+     *
+     * @param file .epub file to open
+     * @return an indexed {@link EpubArchive} for the given file
+     * @throws IOException if the file could not be opened as a zip archive
+     */
+    public abstract EpubArchive open(Path file) throws IOException;
+
+    /**
+     * @return the backend selected through the {@code rose.archive} system property, or {@link #FILE_SYSTEM} if none was selected
+     */
+    public static ArchiveBackend getDefault() {
+        String selected = System.getProperty("rose.archive", FILE_SYSTEM.name());
+
+        try {
+            return valueOf(selected.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException exception) {
+            System.out.printf("Unknown archive backend %s, falling back to %s.%n", selected, FILE_SYSTEM);
+            return FILE_SYSTEM;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package draylar.rose.api.archive;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * An open handle to the zip archive backing an .epub file.
+ *
+ * <p>
+ * The archive is opened once and indexed once. Every regular file inside of it is indexed by its normalized entry name
+ * (for example, {@code OEBPS/Text/chapter1.xhtml}), so lookups by name are a single hash lookup instead of a full walk.
+ * Instances should be closed once the owning {@link draylar.rose.api.Epub} is no longer needed.
+ *
+ * <p>
+ * Archives are opened by an {@link ArchiveBackend}, which can be selected with the {@code rose.archive} system property.
+ */
+public abstract class EpubArchive implements AutoCloseable {
+
+    private final Path file;
+
+    protected EpubArchive(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens the .epub file at the given {@link Path} with the default {@link ArchiveBackend} and indexes all of its entries.
+     *
+     * @param file .epub file to open
+     * @return an indexed {@link EpubArchive} for the given file
+     * @throws IOException if the file could not be opened as a zip archive
+     */
+    public static EpubArchive open(Path file) throws IOException {
+        return ArchiveBackend.getDefault().open(file);
+    }
+
+    /**
+     * Normalizes an entry name so it can be used as a key for {@link #contains(String)} and the read methods.
+     *
+     * <p>
+     * Leading slashes are removed, back-slashes are converted to forward-slashes, and {@code .} and {@code ..} segments are collapsed.
+     *
+     * @param name entry name to normalize
+     * @return the normalized entry name
+     */
+    public static String normalize(String name) {
+        Deque<String> segments = new ArrayDeque<>();
+        for (String segment : name.replace('\\', '/').split("/")) {
+            if (segment.isEmpty() || segment.equals(".")) {
+                continue;
+            }
+
+            if (segment.equals("..")) {
+                segments.pollLast();
+            } else {
+                segments.addLast(segment);
+            }
+        }
+
+        return String.join("/", segments);
+    }
+
+    /**
+     * Resolves a document-relative href (such as a manifest item or an image source) against the directory it was found in.
+     *
+     * <p>
+     * Fragments and query strings are removed, and percent-encoded characters are decoded.
+     *
+     * @param directory normalized directory the href is relative to, such as {@code OEBPS}, or an empty string for the archive root
+     * @param href href to resolve
+     * @return the normalized entry name the href refers to
+     */
+    public static String resolve(String directory, String href) {
+        int cut = href.length();
+        int fragment = href.indexOf('#');
+        int query = href.indexOf('?');
+        if (fragment != -1) cut = Math.min(cut, fragment);
+        if (query != -1) cut = Math.min(cut, query);
+        String decoded = URLDecoder.decode(href.substring(0, cut).replace("+", "%2B"), StandardCharsets.UTF_8);
+
+        // Absolute hrefs are relative to the archive root.
+        if (decoded.startsWith("/") || directory.isEmpty()) {
+            return normalize(decoded);
+        }
+
+        return normalize(directory + "/" + decoded);
+    }
+
+    /**
+     * @param name normalized entry name
+     * @return the normalized name of the directory containing the given entry, or an empty string if it is at the archive root
+     */
+    public static String parentOf(String name) {
+        int index = name.lastIndexOf('/');
+        return index == -1 ? "" : name.substring(0, index);
+    }
+
+    /**
+     * Looks up an entry in an index of normalized entry names, normalizing the given name only if it is not found as-is.
+     */
+    @Nullable
+    protected static <T> T lookup(Map<String, T> entries, String name) {
+        T entry = entries.get(name);
+        return entry == null ? entries.get(normalize(name)) : entry;
+    }
+
+    public abstract boolean contains(String name);
+
+    /**
+     * @return the normalized names of all entries in this archive, in archive order
+     */
+    public abstract Collection<String> getNames();
+
+    /**
+     * Returns the names of all entries in this archive which match the given predicate.
+     *
+     * <p>
+     * This only iterates over the existing index and does not touch the underlying file.
+     *
+     * @param predicate predicate to test against every normalized entry name
+     * @return the names of all entries that match the predicate
+     */
+    public Stream<String> find(Predicate<String> predicate) {
+        return getNames().stream().filter(predicate);
+    }
+
+    /**
+     * Returns the names of all entries ending with one of the given extensions (case-insensitive).
+     *
+     * @param extensions extensions to match, such as {@code .png}
+     * @return names of matching entries
+     */
+    public Collection<String> findByExtension(String... extensions) {
+        return getNames().stream().filter(name -> {
+            String lower = name.toLowerCase();
+            for (String extension : extensions) {
+                if (lower.endsWith(extension)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }).collect(Collectors.toList());
+    }
+
+    /**
+     * @param name entry name to look up
+     * @return the uncompressed size of the given entry in bytes, or {@code -1} if the entry does not exist or its size could not be read
+     */
+    public abstract long getSize(String name);
+
+    /**
+     * @param name entry name to read
+     * @return the entry contents as a UTF-8 string, or {@code null} if the entry does not exist or could not be read
+     */
+    @Nullable
+    public String readString(String name) {
+        byte[] bytes = readBytes(name);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param name entry name to read
+     * @return the raw entry contents, or {@code null} if the entry does not exist or could not be read
+     */
+    @Nullable
+    public abstract byte[] readBytes(String name);
+
+    /**
+     * Returns the contents of an entry as a read-only {@link ByteBuffer}. Backends which can expose an entry without copying it
+     * (such as uncompressed entries of a {@link MappedZipArchive}) return a view of the archive itself.
+     *
+     * @param name entry name to read
+     * @return the raw entry contents, or {@code null} if the entry does not exist or could not be read
+     */
+    @Nullable
+    public ByteBuffer readBuffer(String name) {
+        byte[] bytes = readBytes(name);
+        return bytes == null ? null : ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+    }
+
+    /**
+     * @param name entry name to open
+     * @return a new {@link InputStream} over the contents of the given entry
+     * @throws IOException if the entry does not exist or could not be opened
+     */
+    public abstract InputStream newInputStream(String name) throws IOException;
+
+    /**
+     * @return the exception thrown when opening an entry this archive does not contain
+     */
+    protected IOException missingEntry(String name) {
+        return new IOException(String.format("%s does not contain an entry named %s", file.getFileName(), name));
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public abstract void close() throws IOException;
+}
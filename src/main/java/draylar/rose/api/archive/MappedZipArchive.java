@@ -0,0 +1,441 @@
+package draylar.rose.api.archive;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * {@link EpubArchive} which memory-maps the .epub file and reads it as a zip archive itself.
+ *
+ * <p>
+ * Opening an archive only parses the End of Central Directory record and the central directory, which is all that is needed to index
+ * every entry. The local header of an entry is only read once the entry itself is read. Uncompressed ({@code STORED}) entries, such as
+ * {@code mimetype} and most images, are exposed as read-only slices of the mapping without being copied (see {@link #readBuffer(String)}),
+ * and compressed ({@code DEFLATED}) entries are inflated out of the mapping in small chunks.
+ *
+ * <p>
+ * Only archives smaller than 2 GB without zip64 records, encryption or compression methods other than {@code STORED} and
+ * {@code DEFLATED} are supported, which covers .epub files in practice. The mapping can not be released explicitly, and is released
+ * once the archive is no longer reachable. Until then, the file stays locked on Windows, and if it is truncated by another program,
+ * reads fail with an {@link IOException} (buffers returned by {@link #readBuffer(String)} throw an {@link InternalError} instead).
+ */
+public class MappedZipArchive extends EpubArchive {
+
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+    private static final int LOCAL_SIGNATURE = 0x04034b50;
+    private static final int END_SIZE = 22;
+    private static final int CENTRAL_SIZE = 46;
+    private static final int LOCAL_SIZE = 30;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final int ENCRYPTED = 1;
+    private static final int CHUNK_SIZE = 8 * 1024;
+
+    private final ByteBuffer mapped;
+    private final Map<String, Entry> entries;
+    private volatile boolean closed = false;
+
+    private MappedZipArchive(Path file, ByteBuffer mapped, Map<String, Entry> entries) {
+        super(file);
+        this.mapped = mapped;
+        this.entries = entries;
+    }
+
+    /**
+     * Maps the .epub file at the given {@link Path} and indexes all of its entries from its central directory.
+     *
+     * @param file .epub file to open
+     * @return an indexed {@link MappedZipArchive} for the given file
+     * @throws IOException if the file could not be mapped, is not a zip archive, or uses zip features this reader does not support
+     */
+    public static MappedZipArchive open(Path file) throws IOException {
+        ByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("archive is larger than 2 GB");
+            }
+
+            // The mapping stays valid after the channel is closed.
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        try {
+            return new MappedZipArchive(file, mapped, readCentralDirectory(mapped));
+        } catch (InternalError error) {
+            throw truncated(error);
+        }
+    }
+
+    private static Map<String, Entry> readCentralDirectory(ByteBuffer mapped) throws IOException {
+        int end = findEnd(mapped);
+        int count = getShort(mapped, end + 10);
+        long directoryOffset = getInt(mapped, end + 16);
+        if (count == 0xFFFF || directoryOffset == 0xFFFFFFFFL) {
+            throw new IOException("zip64 archives are not supported");
+        }
+
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        int position = (int) directoryOffset;
+        for (int index = 0; index < count; index++) {
+            if (position < 0 || position + CENTRAL_SIZE > end || mapped.getInt(position) != CENTRAL_SIGNATURE) {
+                throw new IOException("corrupt central directory");
+            }
+
+            int flags = getShort(mapped, position + 8);
+            int method = getShort(mapped, position + 10);
+            long compressedSize = getInt(mapped, position + 20);
+            long size = getInt(mapped, position + 24);
+            int nameLength = getShort(mapped, position + 28);
+            int extraLength = getShort(mapped, position + 30);
+            int commentLength = getShort(mapped, position + 32);
+            long localOffset = getInt(mapped, position + 42);
+            if (compressedSize == 0xFFFFFFFFL || size == 0xFFFFFFFFL || localOffset == 0xFFFFFFFFL) {
+                throw new IOException("zip64 archives are not supported");
+            }
+
+            if ((long) position + CENTRAL_SIZE + nameLength + extraLength + commentLength > end) {
+                throw new IOException("corrupt central directory");
+            }
+
+            // Names are read as UTF-8, just like the JDK zip file system does by default.
+            byte[] name = new byte[nameLength];
+            mapped.get(position + CENTRAL_SIZE, name);
+            position += CENTRAL_SIZE + nameLength + extraLength + commentLength;
+
+            String decoded = new String(name, StandardCharsets.UTF_8);
+            if (!decoded.endsWith("/")) {
+                entries.put(normalize(decoded), new Entry(flags, method, compressedSize, size, localOffset));
+            }
+        }
+
+        return entries;
+    }
+
+    /**
+     * @return the position of the End of Central Directory record, which is followed by a comment of up to 64 KB
+     */
+    private static int findEnd(ByteBuffer mapped) throws IOException {
+        int lowest = Math.max(0, mapped.limit() - END_SIZE - MAX_COMMENT_SIZE);
+        for (int position = mapped.limit() - END_SIZE; position >= lowest; position--) {
+            if (mapped.getInt(position) == END_SIGNATURE) {
+                return position;
+            }
+        }
+
+        throw new IOException("not a zip archive");
+    }
+
+    private static int getShort(ByteBuffer mapped, int position) {
+        return mapped.getShort(position) & 0xFFFF;
+    }
+
+    private static long getInt(ByteBuffer mapped, int position) {
+        return mapped.getInt(position) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * @return a read-only view of the stored (possibly compressed) data of the given entry
+     */
+    private ByteBuffer getData(Entry entry) throws IOException {
+        if (closed) {
+            throw new IOException(getFile().getFileName() + " has been closed");
+        }
+
+        if ((entry.flags & ENCRYPTED) != 0 || (entry.method != STORED && entry.method != DEFLATED)) {
+            throw new IOException("unsupported zip entry (method " + entry.method + ", flags " + entry.flags + ")");
+        }
+
+        // The local header repeats the name and has its own extra field, so its length is only known once it is read.
+        if (entry.localOffset + LOCAL_SIZE > mapped.limit()) {
+            throw new IOException("corrupt local header");
+        }
+
+        try {
+            int local = (int) entry.localOffset;
+            if (mapped.getInt(local) != LOCAL_SIGNATURE) {
+                throw new IOException("corrupt local header");
+            }
+
+            long data = local + LOCAL_SIZE + getShort(mapped, local + 26) + getShort(mapped, local + 28);
+            if (data + entry.compressedSize > mapped.limit()) {
+                throw new IOException("entry data is out of bounds");
+            }
+
+            return mapped.slice((int) data, (int) entry.compressedSize).asReadOnlyBuffer();
+        } catch (InternalError error) {
+            throw truncated(error);
+        }
+    }
+
+    /**
+     * Reading a mapping past the end of its file (after the file was truncated) fails with an {@link InternalError}, which is reported
+     * as an {@link IOException} like every other failed read. The error may be raised a little after the faulting access, so it is caught
+     * around each whole read rather than around single accesses.
+     */
+    private static IOException truncated(InternalError error) {
+        return new IOException("archive was truncated while it was mapped", error);
+    }
+
+    private byte[] inflate(Entry entry) throws IOException {
+        if (entry.size > Integer.MAX_VALUE) {
+            throw new IOException("entry is larger than 2 GB");
+        }
+
+        byte[] bytes = new byte[(int) entry.size];
+        try (InputStream stream = newInputStream(entry)) {
+            int read = 0;
+            while (read < bytes.length) {
+                int count = stream.read(bytes, read, bytes.length - read);
+                if (count == -1) {
+                    throw new EOFException("entry is shorter than declared");
+                }
+
+                read += count;
+            }
+        } catch (InternalError error) {
+            throw truncated(error);
+        }
+
+        return bytes;
+    }
+
+    private InputStream newInputStream(Entry entry) throws IOException {
+        ByteBuffer data = getData(entry);
+        return entry.method == STORED ? new BufferInputStream(data) : new InflatingInputStream(data);
+    }
+
+    @Override
+    public boolean contains(String name) {
+        return lookup(entries, name) != null;
+    }
+
+    @Override
+    public Collection<String> getNames() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    @Override
+    public long getSize(String name) {
+        Entry entry = lookup(entries, name);
+        return entry == null ? -1 : entry.size;
+    }
+
+    @Nullable
+    @Override
+    public byte[] readBytes(String name) {
+        Entry entry = lookup(entries, name);
+
+        if (entry != null) {
+            try {
+                return inflate(entry);
+            } catch (IOException ioException) {
+                ioException.printStackTrace();
+            } catch (InternalError error) {
+                truncated(error).printStackTrace();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the contents of an entry as a read-only {@link ByteBuffer}. Uncompressed entries are returned as a slice of the mapped archive,
+     * without copying them, while compressed entries are inflated into a new buffer.
+     */
+    @Nullable
+    @Override
+    public ByteBuffer readBuffer(String name) {
+        Entry entry = lookup(entries, name);
+
+        if (entry != null) {
+            try {
+                return entry.method == STORED ? getData(entry) : ByteBuffer.wrap(inflate(entry)).asReadOnlyBuffer();
+            } catch (IOException ioException) {
+                ioException.printStackTrace();
+            } catch (InternalError error) {
+                truncated(error).printStackTrace();
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public InputStream newInputStream(String name) throws IOException {
+        Entry entry = lookup(entries, name);
+
+        if (entry == null) {
+            throw missingEntry(name);
+        }
+
+        try {
+            return newInputStream(entry);
+        } catch (InternalError error) {
+            throw truncated(error);
+        }
+    }
+
+    /**
+     * Marks this archive as closed. Entries can no longer be read afterwards, but the mapping itself is only released once this archive
+     * is no longer reachable.
+     */
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    private static final class Entry {
+
+        private final int flags;
+        private final int method;
+        private final long compressedSize;
+        private final long size;
+        private final long localOffset;
+
+        private Entry(int flags, int method, long compressedSize, long size, long localOffset) {
+            this.flags = flags;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localOffset = localOffset;
+        }
+    }
+
+    /**
+     * Reads an uncompressed entry straight out of its slice of the mapping.
+     */
+    private static final class BufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+            } catch (InternalError error) {
+                throw truncated(error);
+            }
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+
+            int read = Math.min(length, buffer.remaining());
+            try {
+                buffer.get(bytes, offset, read);
+            } catch (InternalError error) {
+                throw truncated(error);
+            }
+
+            return read;
+        }
+
+        @Override
+        public long skip(long count) {
+            int skipped = (int) Math.max(0, Math.min(count, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    /**
+     * Inflates a compressed entry out of its slice of the mapping.
+     *
+     * <p>
+     * The compressed data is copied into the inflater in small chunks instead of handing it the mapping itself, as native code reading
+     * a mapping past the end of a truncated file crashes the JVM, while copying out of the mapping only fails with an {@link InternalError}.
+     */
+    private static final class InflatingInputStream extends InputStream {
+
+        private final ByteBuffer data;
+        private final Inflater inflater = new Inflater(true);
+        private final byte[] chunk = new byte[CHUNK_SIZE];
+        private final byte[] single = new byte[1];
+        private boolean closed = false;
+
+        private InflatingInputStream(ByteBuffer data) {
+            this.data = data;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+
+            if (length == 0) {
+                return 0;
+            }
+
+            try {
+                while (!inflater.finished()) {
+                    int inflated = inflater.inflate(bytes, offset, length);
+                    if (inflated > 0) {
+                        return inflated;
+                    }
+
+                    if (inflater.needsDictionary() || (inflater.needsInput() && !data.hasRemaining())) {
+                        throw new EOFException("unexpected end of entry");
+                    }
+
+                    if (inflater.needsInput()) {
+                        int count = Math.min(chunk.length, data.remaining());
+                        data.get(chunk, 0, count);
+                        inflater.setInput(chunk, 0, count);
+                    }
+                }
+
+                return -1;
+            } catch (DataFormatException exception) {
+                throw new IOException(exception);
+            } catch (InternalError error) {
+                throw truncated(error);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                inflater.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package draylar.rose.api.archive;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * {@link EpubArchive} backed by the JDK zip {@link FileSystem}.
+ *
+ * <p>
+ * The archive's file system is walked once when it is opened, and every regular file is indexed by its normalized entry name.
+ */
+public class ZipFileSystemArchive extends EpubArchive {
+
+    private final FileSystem fileSystem;
+    private final Map<String, Path> entries;
+
+    private ZipFileSystemArchive(Path file, FileSystem fileSystem, Map<String, Path> entries) {
+        super(file);
+        this.fileSystem = fileSystem;
+        this.entries = entries;
+    }
+
+    /**
+     * Opens the .epub file at the given {@link Path} and indexes all of its entries.
+     *
+     * @param file .epub file to open
+     * @return an indexed {@link ZipFileSystemArchive} for the given file
+     * @throws IOException if the file could not be opened as a zip archive
+     */
+    public static ZipFileSystemArchive open(Path file) throws IOException {
+        FileSystem fileSystem = FileSystems.newFileSystem(file, Collections.emptyMap());
+        Map<String, Path> entries = new LinkedHashMap<>();
+
+        try {
+            for (Path root : fileSystem.getRootDirectories()) {
+                try (Stream<Path> walk = Files.walk(root)) {
+                    walk.filter(Files::isRegularFile).forEach(path -> entries.put(normalize(path.toString()), path));
+                }
+            }
+        } catch (IOException | RuntimeException exception) {
+            fileSystem.close();
+            throw exception;
+        }
+
+        return new ZipFileSystemArchive(file, fileSystem, entries);
+    }
+
+    @Override
+    public boolean contains(String name) {
+        return lookup(entries, name) != null;
+    }
+
+    @Override
+    public Collection<String> getNames() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    @Override
+    public long getSize(String name) {
+        Path path = lookup(entries, name);
+
+        if (path != null) {
+            try {
+                return Files.size(path);
+            } catch (IOException ioException) {
+                ioException.printStackTrace();
+            }
+        }
+
+        return -1;
+    }
+
+    @Nullable
+    @Override
+    public byte[] readBytes(String name) {
+        Path path = lookup(entries, name);
+
+        if (path != null) {
+            try {
+                return Files.readAllBytes(path);
+            } catch (IOException ioException) {
+                ioException.printStackTrace();
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public InputStream newInputStream(String name) throws IOException {
+        Path path = lookup(entries, name);
+
+        if (path == null) {
+            throw missingEntry(name);
+        }
+
+        return Files.newInputStream(path);
+    }
+
+    @Override
+    public void close() throws IOException {
+        fileSystem.close();
+    }
+}
@@ -1,15 +1,23 @@
 package draylar.rose.api.book;
 
+import java.util.Objects;
+
 public class ManifestEntry {
 
     private final String id;
     private final String href;
     private final String mediaType;
+    private final String properties;
 
     public ManifestEntry(String id, String href, String mediaType) {
+        this(id, href, mediaType, "");
+    }
+
+    public ManifestEntry(String id, String href, String mediaType, String properties) {
         this.id = id;
         this.href = href;
         this.mediaType = mediaType;
+        this.properties = properties;
     }
 
     public String getId() {
@@ -23,4 +31,21 @@ public class ManifestEntry {
     public String getMediaType() {
         return mediaType;
     }
+
+    public String getProperties() {
+        return properties;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (!(other instanceof ManifestEntry)) return false;
+        ManifestEntry that = (ManifestEntry) other;
+        return Objects.equals(id, that.id) && Objects.equals(href, that.href) && Objects.equals(mediaType, that.mediaType) && Objects.equals(properties, that.properties);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, href, mediaType, properties);
+    }
 }
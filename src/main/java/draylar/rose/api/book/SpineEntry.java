@@ -1,5 +1,7 @@
 package draylar.rose.api.book;
 
+import java.util.Objects;
+
 public class SpineEntry {
 
     private final String idref;
@@ -11,4 +13,17 @@ public class SpineEntry {
     public String getIdref() {
         return idref;
     }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (!(other instanceof SpineEntry)) return false;
+        SpineEntry that = (SpineEntry) other;
+        return Objects.equals(idref, that.idref);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(idref);
+    }
 }
@@ -0,0 +1,222 @@
+package draylar.rose.api.cover;
+
+import draylar.rose.api.Epub;
+import draylar.rose.api.task.LoadPriority;
+import draylar.rose.api.task.LoadScheduler;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.Image;
+import org.jetbrains.annotations.Nullable;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Shared, size-bounded in-memory cache of decoded cover images.
+ *
+ * <p>
+ * Covers are keyed by book and {@link CoverSize}, and cost {@code width * height * 4} bytes each.
+ * Once the total size passes the byte budget, the least recently used covers are evicted. Evicted covers are simply
+ * reloaded from the {@link ThumbnailCache} the next time they are requested.
+ *
+ * <p>
+ * The budget defaults to 64 MB and can be changed with the {@code rose.coverCache.bytes} system property.
+ */
+public class CoverCache {
+
+    private static final CoverCache INSTANCE = new CoverCache(Long.getLong("rose.coverCache.bytes", 64L * 1024 * 1024));
+
+    private final long budget;
+    private final LinkedHashMap<Key, Image> images = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<Key, Pending> loading = new HashMap<>();
+    private long size = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public CoverCache(long budget) {
+        this.budget = budget;
+    }
+
+    public static CoverCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the cached cover of the given book, or {@code null} if it is not currently in memory
+     */
+    @Nullable
+    public synchronized Image getIfPresent(Epub epub, CoverSize size) {
+        return images.get(new Key(epub.getRoot(), size));
+    }
+
+    /**
+     * Returns the cover of the given book, loading it through the {@link LoadScheduler} if it is not in memory.
+     *
+     * <p>
+     * Concurrent requests for the same cover share a single load. Each caller receives its own future, so a caller that
+     * is no longer interested should call {@link #cancel(Epub, CoverSize)} instead of cancelling the returned future.
+     *
+     * @param epub book to load the cover of
+     * @param size cover variant to load
+     * @param priority lane to load the cover in if it is not cached
+     * @return a future completed with the cover, or with {@code null} if the book has no readable cover
+     */
+    public CompletableFuture<Image> load(Epub epub, CoverSize size, LoadPriority priority) {
+        Key key = new Key(epub.getRoot(), size);
+
+        synchronized (this) {
+            Image cached = images.get(key);
+            if (cached != null) {
+                hits++;
+                return CompletableFuture.completedFuture(cached);
+            }
+
+            Pending pending = loading.get(key);
+            if (pending != null) {
+                hits++;
+                pending.waiters++;
+                return pending.future.copy();
+            }
+
+            misses++;
+            CompletableFuture<Image> future = LoadScheduler.get().supply(priority, epub.getLoadGroup(), () -> {
+                BufferedImage image = ThumbnailCache.read(epub, size);
+                return image == null ? null : SwingFXUtils.toFXImage(image, null);
+            });
+
+            Pending started = new Pending(future);
+            loading.put(key, started);
+            future.whenComplete((image, error) -> {
+                synchronized (this) {
+                    loading.remove(key, started);
+                    if (image != null) {
+                        put(key, image);
+                    }
+                }
+            });
+
+            return future.copy();
+        }
+    }
+
+    /**
+     * Withdraws one request for the given cover, such as when a grid cell is recycled for another book.
+     * Once nobody is waiting for a cover, its load is skipped if it has not started yet.
+     *
+     * @param epub book the cover was requested for
+     * @param size cover variant that was requested
+     */
+    public synchronized void cancel(Epub epub, CoverSize size) {
+        Key key = new Key(epub.getRoot(), size);
+        Pending pending = loading.get(key);
+
+        if (pending != null && --pending.waiters <= 0) {
+            loading.remove(key);
+            pending.future.cancel(false);
+        }
+    }
+
+    private void put(Key key, Image image) {
+        Image previous = images.put(key, image);
+        if (previous != null) {
+            size -= cost(previous);
+        }
+
+        size += cost(image);
+
+        // Evict the least recently used covers until we are back under budget. The newest cover is always kept.
+        Iterator<Map.Entry<Key, Image>> iterator = images.entrySet().iterator();
+        while (size > budget && images.size() > 1 && iterator.hasNext()) {
+            Map.Entry<Key, Image> eldest = iterator.next();
+            if (eldest.getKey().equals(key)) {
+                continue;
+            }
+
+            size -= cost(eldest.getValue());
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Removes all cached covers of the given book, such as after it was changed or deleted.
+     *
+     * <p>
+     * Loads of the book's covers which are still in flight are cancelled as well, so a cover read from the old file is never cached.
+     */
+    public synchronized void invalidate(Path book) {
+        // Cancelling completes the load right away, which removes it from the loading map, so collect the loads before cancelling them.
+        List<Pending> pending = new ArrayList<>();
+        loading.entrySet().removeIf(entry -> entry.getKey().book.equals(book) && pending.add(entry.getValue()));
+        pending.forEach(load -> load.future.cancel(false));
+
+        images.entrySet().removeIf(entry -> {
+            if (entry.getKey().book.equals(book)) {
+                size -= cost(entry.getValue());
+                return true;
+            }
+
+            return false;
+        });
+    }
+
+    private static long cost(Image image) {
+        return (long) image.getWidth() * (long) image.getHeight() * 4;
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("CoverCache[covers=%d, size=%dKB/%dKB, hits=%d, misses=%d, evictions=%d]",
+                images.size(), size / 1024, budget / 1024, hits, misses, evictions);
+    }
+
+    private static final class Key {
+
+        private final Path book;
+        private final CoverSize size;
+
+        private Key(Path book, CoverSize size) {
+            this.book = book;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) return true;
+            if (!(other instanceof Key)) return false;
+            Key key = (Key) other;
+            return book.equals(key.book) && size == key.size;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(book, size);
+        }
+    }
+
+    private static final class Pending {
+
+        private final CompletableFuture<Image> future;
+        private int waiters = 1;
+
+        private Pending(CompletableFuture<Image> future) {
+            this.future = future;
+        }
+    }
+}
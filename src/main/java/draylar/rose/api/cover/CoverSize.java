@@ -0,0 +1,39 @@
+package draylar.rose.api.cover;
+
+/**
+ * Pre-scaled cover variants stored by the {@link ThumbnailCache}.
+ */
+public enum CoverSize {
+
+    /**
+     * Cover shown for each book in the library grid.
+     */
+    GRID("cover-grid.png", 95, 142),
+
+    /**
+     * Cover shown in the sidebar when a book is selected.
+     */
+    SIDEBAR("cover-sidebar.png", 250, 250);
+
+    private final String fileName;
+    private final int width;
+    private final int height;
+
+    CoverSize(String fileName, int width, int height) {
+        this.fileName = fileName;
+        this.width = width;
+        this.height = height;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,144 @@
+package draylar.rose.api.cover;
+
+import draylar.rose.api.Epub;
+import org.imgscalr.Scalr;
+import org.jetbrains.annotations.Nullable;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * On-disk cache of pre-scaled cover images, stored in each book's data directory.
+ *
+ * <p>
+ * The first time a cover is requested, the original cover is decoded once and every {@link CoverSize} variant is written.
+ * Later requests read the small variant directly. Each variant is stamped with the modification time of its .epub file,
+ * so the original cover is only decoded again if the .epub file changes.
+ *
+ * <p>
+ * Books without a readable cover get a stamped {@link #NO_COVER} marker instead, so they are not opened again every time their cover is requested.
+ */
+public class ThumbnailCache {
+
+    public static final String NO_COVER = "no-cover";
+    private static final Map<Path, Object> LOCKS = new ConcurrentHashMap<>();
+
+    /**
+     * @return the location of the given cover variant for the given book
+     */
+    public static Path getPath(Epub epub, CoverSize size) {
+        return epub.getDataDirectory().resolve(size.getFileName());
+    }
+
+    /**
+     * @return {@code true} if the given cover variant exists and was generated from the current version of the .epub file
+     */
+    public static boolean isValid(Epub epub, CoverSize size) {
+        return isCurrent(epub, getPath(epub, size));
+    }
+
+    /**
+     * @return {@code true} if the current version of the given book is known to have no readable cover
+     */
+    public static boolean hasNoCover(Epub epub) {
+        return isCurrent(epub, epub.getDataDirectory().resolve(NO_COVER));
+    }
+
+    /**
+     * @return {@code true} if the given file exists and is stamped with the modification time of the current version of the .epub file
+     */
+    private static boolean isCurrent(Epub epub, Path file) {
+        try {
+            return Files.exists(file) && Files.getLastModifiedTime(file).equals(Files.getLastModifiedTime(epub.getRoot()));
+        } catch (IOException ioException) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads the given cover variant of a book, generating all variants first if they are missing or stale.
+     *
+     * @param epub book to read the cover of
+     * @param size cover variant to read
+     * @return the scaled cover, or {@code null} if the book has no readable cover
+     */
+    @Nullable
+    public static BufferedImage read(Epub epub, CoverSize size) {
+        if (!isValid(epub, size) && !generate(epub)) {
+            return null;
+        }
+
+        try {
+            return ImageIO.read(getPath(epub, size).toFile());
+        } catch (IOException ioException) {
+            ioException.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Decodes the original cover of the given book and writes every {@link CoverSize} variant to its data directory.
+     *
+     * <p>
+     * If all variants are already valid, or the book is known to have no readable cover, nothing is decoded.
+     *
+     * @param epub book to generate cover variants for
+     * @return {@code true} if all variants are available afterwards
+     */
+    public static boolean generate(Epub epub) {
+        // Two callers (such as the catalog and the grid) may ask for the same book at once. Only decode it once.
+        synchronized (LOCKS.computeIfAbsent(epub.getRoot(), path -> new Object())) {
+            boolean valid = true;
+            for (CoverSize size : CoverSize.values()) {
+                valid &= isValid(epub, size);
+            }
+
+            if (valid) {
+                return true;
+            }
+
+            if (hasNoCover(epub)) {
+                return false;
+            }
+
+            try {
+                FileTime stamp = Files.getLastModifiedTime(epub.getRoot());
+                Files.createDirectories(epub.getDataDirectory());
+
+                BufferedImage cover = epub.readCover();
+                if (cover == null) {
+                    // Remember that this version of the book has no cover, so it is not opened again for it.
+                    Path marker = epub.getDataDirectory().resolve(NO_COVER);
+                    Files.write(marker, new byte[0]);
+                    Files.setLastModifiedTime(marker, stamp);
+                    return false;
+                }
+
+                for (CoverSize size : CoverSize.values()) {
+                    // JavaFX ImageView downscaling is very bad.
+                    // To get around this, we manually downscale our images using imgscalr (https://github.com/rkalla/imgscalr).
+                    BufferedImage scaled = Scalr.resize(cover, size.getWidth(), size.getHeight());
+
+                    // Write to a temporary file first so a partially written variant is never read.
+                    Path target = getPath(epub, size);
+                    Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+                    ImageIO.write(scaled, "png", temporary.toFile());
+                    Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    Files.setLastModifiedTime(target, stamp);
+                }
+
+                return true;
+            } catch (IOException ioException) {
+                ioException.printStackTrace();
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package draylar.rose.api.library;
+
+import draylar.rose.api.EpubMetadata;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A single book stored in the {@link LibraryCatalog}.
+ *
+ * <p>
+ * Each entry holds everything the library screen needs to display a book without opening it,
+ * along with a validity key (file size, modification time, and an optional content hash) used to detect changed files.
+ */
+public class CatalogEntry {
+
+    private final String fileName;
+    private final long size;
+    private final long lastModified;
+    @Nullable private final String hash;
+    private final EpubMetadata metadata;
+    private final int spineSize;
+    @Nullable private final String coverPath;
+
+    public CatalogEntry(String fileName, long size, long lastModified, @Nullable String hash, EpubMetadata metadata, int spineSize, @Nullable String coverPath) {
+        this.fileName = fileName;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.hash = hash;
+        this.metadata = metadata;
+        this.spineSize = spineSize;
+        this.coverPath = coverPath;
+    }
+
+    /**
+     * Checks whether this entry still describes the given file.
+     *
+     * <p>
+     * The file size and modification time are compared first. If the size matches but the modification time does not
+     * (for example, after the file was copied or touched), the content hash is compared instead, if one was recorded.
+     *
+     * @param file .epub file to check against
+     * @return {@code true} if the file has not changed since this entry was created
+     */
+    public boolean isValidFor(Path file) {
+        try {
+            long currentSize = Files.size(file);
+            if (currentSize != size) {
+                return false;
+            }
+
+            if (Files.getLastModifiedTime(file).toMillis() == lastModified) {
+                return true;
+            }
+
+            return hash != null && hash.equals(hash(file));
+        } catch (IOException ioException) {
+            return false;
+        }
+    }
+
+    /**
+     * @param file file to hash
+     * @return the hex-encoded SHA-256 hash of the given file's contents
+     * @throws IOException if the file could not be read
+     */
+    public static String hash(Path file) throws IOException {
+        try (InputStream stream = Files.newInputStream(file)) {
+            return hash(stream);
+        }
+    }
+
+    /**
+     * @param stream stream to hash, read until its end
+     * @return the hex-encoded SHA-256 hash of the given stream's contents
+     * @throws IOException if the stream could not be read
+     */
+    public static String hash(InputStream stream) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+
+            return hex.toString();
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeUTF(fileName);
+        out.writeLong(size);
+        out.writeLong(lastModified);
+        writeNullable(out, hash);
+        out.writeUTF(metadata.getTitle());
+        out.writeUTF(metadata.getCreator());
+        out.writeUTF(metadata.getContributor());
+        out.writeUTF(metadata.getIdentifier());
+        out.writeUTF(metadata.getRelation());
+        out.writeUTF(metadata.getPublisher());
+        out.writeUTF(metadata.getDate());
+        out.writeUTF(metadata.getSubject());
+        out.writeUTF(metadata.getLanguage());
+        out.writeInt(spineSize);
+        writeNullable(out, coverPath);
+    }
+
+    static CatalogEntry read(DataInputStream in) throws IOException {
+        String fileName = in.readUTF();
+        long size = in.readLong();
+        long lastModified = in.readLong();
+        String hash = readNullable(in);
+        EpubMetadata metadata = new EpubMetadata(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF());
+        int spineSize = in.readInt();
+        String coverPath = readNullable(in);
+        return new CatalogEntry(fileName, size, lastModified, hash, metadata, spineSize, coverPath);
+    }
+
+    private static void writeNullable(DataOutputStream out, @Nullable String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    @Nullable
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    @Nullable
+    public String getHash() {
+        return hash;
+    }
+
+    public EpubMetadata getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * @return the number of sections in the book's spine
+     */
+    public int getSpineSize() {
+        return spineSize;
+    }
+
+    /**
+     * @return the location of the book's grid cover thumbnail, or {@code null} if the book has no readable cover
+     */
+    @Nullable
+    public String getCoverPath() {
+        return coverPath;
+    }
+}
@@ -0,0 +1,186 @@
+package draylar.rose.api.library;
+
+import draylar.rose.Rose;
+import draylar.rose.api.Epub;
+import draylar.rose.api.cover.CoverSize;
+import draylar.rose.api.cover.ThumbnailCache;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * A persistent index of every book in the Rose Library.
+ *
+ * <p>
+ * The catalog is stored in {@code /Rose Library/Data/catalog.dat} and records each book's metadata, spine size and cover thumbnail,
+ * keyed by file name. On startup, books with a valid {@link CatalogEntry} can be displayed without opening the .epub file at all.
+ * Only new or changed files need to be parsed and re-cataloged.
+ *
+ * <p>
+ * Content hashes are only recorded when the {@code rose.catalog.hash} system property is {@code true}.
+ */
+public class LibraryCatalog {
+
+    public static final Path DEFAULT_LOCATION = Rose.ROSE_LIBRARY_DATA_PATH.resolve("catalog.dat");
+    private static final int MAGIC = 0x524F5345; // "ROSE"
+    private static final int VERSION = 1;
+    private static final boolean HASH_ENTRIES = Boolean.getBoolean("rose.catalog.hash");
+
+    private final Path location;
+    private final Map<String, CatalogEntry> entries = new ConcurrentHashMap<>();
+    private volatile boolean dirty = false;
+
+    public LibraryCatalog(Path location) {
+        this.location = location;
+    }
+
+    /**
+     * Loads the catalog stored at the given location.
+     *
+     * <p>
+     * If the catalog does not exist or could not be read, an empty catalog is returned, and every book will be re-parsed.
+     *
+     * @param location catalog file to load
+     * @return the loaded {@link LibraryCatalog}
+     */
+    public static LibraryCatalog load(Path location) {
+        LibraryCatalog catalog = new LibraryCatalog(location);
+
+        if (Files.exists(location)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(location)))) {
+                if (in.readInt() != MAGIC) {
+                    System.out.println("Library catalog is not a catalog file or is corrupt, and will be rebuilt.");
+                } else if (in.readInt() != VERSION) {
+                    System.out.println("Library catalog is from another version of Rose and will be rebuilt.");
+                } else {
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        CatalogEntry entry = CatalogEntry.read(in);
+                        catalog.entries.put(entry.getFileName(), entry);
+                    }
+                }
+            } catch (IOException ioException) {
+                ioException.printStackTrace();
+                catalog.entries.clear();
+            }
+        }
+
+        return catalog;
+    }
+
+    /**
+     * @param file .epub file to look up
+     * @return the {@link CatalogEntry} for the given file, or {@code null} if it is not cataloged or has changed since it was cataloged
+     */
+    @Nullable
+    public CatalogEntry get(Path file) {
+        CatalogEntry entry = entries.get(file.getFileName().toString());
+        return entry != null && entry.isValidFor(file) ? entry : null;
+    }
+
+    /**
+     * Creates or replaces the {@link CatalogEntry} of the given, fully-parsed {@link Epub}.
+     *
+     * <p>
+     * The scaled cover variants of the {@link ThumbnailCache} are generated here, so future launches can display the book
+     * without decoding the full cover image.
+     *
+     * @param epub book to catalog
+     * @return the new {@link CatalogEntry}, or {@code null} if the book could not be read
+     */
+    @Nullable
+    public CatalogEntry update(Epub epub) {
+        Path file = epub.getRoot();
+
+        try {
+            String coverPath = ThumbnailCache.generate(epub) ? ThumbnailCache.getPath(epub, CoverSize.GRID).toString() : null;
+            CatalogEntry entry = new CatalogEntry(
+                    file.getFileName().toString(),
+                    Files.size(file),
+                    Files.getLastModifiedTime(file).toMillis(),
+                    HASH_ENTRIES ? CatalogEntry.hash(file) : null,
+                    epub.getMetadata(),
+                    epub.getSpineCount(),
+                    coverPath);
+
+            entries.put(entry.getFileName(), entry);
+            dirty = true;
+            return entry;
+        } catch (IOException ioException) {
+            ioException.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Removes all entries which do not belong to one of the given files.
+     *
+     * @param files all .epub files currently in the library
+     */
+    public void retain(Collection<Path> files) {
+        Set<String> names = files.stream().map(path -> path.getFileName().toString()).collect(Collectors.toSet());
+        if (entries.keySet().retainAll(names)) {
+            dirty = true;
+        }
+    }
+
+    public void remove(Path file) {
+        if (entries.remove(file.getFileName().toString()) != null) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Writes this catalog to disk if it has changed since it was loaded or last saved.
+     *
+     * <p>
+     * The catalog is written to a temporary file first and then moved into place, so a crash while saving never leaves a truncated catalog behind.
+     * Entries may be updated while the catalog is being saved. Those updates mark the catalog as changed again, and are written by the next save.
+     */
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+
+        // Cleared before the snapshot is taken, so an update made after the snapshot is never marked as saved.
+        dirty = false;
+
+        try {
+            Files.createDirectories(location.getParent());
+            Path temporary = location.resolveSibling(location.getFileName() + ".tmp");
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                List<CatalogEntry> snapshot = new ArrayList<>(entries.values());
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(snapshot.size());
+                for (CatalogEntry entry : snapshot) {
+                    entry.write(out);
+                }
+            }
+
+            Files.move(temporary, location, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ioException) {
+            ioException.printStackTrace();
+            dirty = true;
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,216 @@
+package draylar.rose.api.library;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Watches the Rose Library directory for .epub files being added, changed or removed.
+ *
+ * <p>
+ * File system events arrive in bursts (copying 500 books in at once produces thousands of create and modify events),
+ * so events are coalesced until the directory has been quiet for {@link #QUIET_PERIOD_MILLIS}, and then delivered to the
+ * listener as a single {@link Changes} batch. A batch is always delivered after at most {@link #MAX_BATCH_DELAY_MILLIS},
+ * even if events are still arriving, so long copies show up incrementally.
+ */
+public class LibraryWatcher implements AutoCloseable {
+
+    public static final long QUIET_PERIOD_MILLIS = 500;
+    public static final long MAX_BATCH_DELAY_MILLIS = 3000;
+
+    private final Path directory;
+    private final Consumer<Changes> listener;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    public LibraryWatcher(Path directory, Consumer<Changes> listener) throws IOException {
+        this.directory = directory;
+        this.listener = listener;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        this.thread = new Thread(this::watch, "Rose Library Watcher");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    private void watch() {
+        try {
+            Changes changes = new Changes();
+
+            while (true) {
+                // Wait for the first event of a new batch, then keep collecting until the batch is ready.
+                WatchKey key = changes.isEmpty() ? watchService.take() : watchService.poll(changes.getWaitMillis(), TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    collect(key, changes);
+                }
+
+                if (changes.isReady()) {
+                    try {
+                        listener.accept(changes);
+                    } catch (Exception exception) {
+                        exception.printStackTrace();
+                    }
+
+                    changes = new Changes();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+            // closed
+        }
+    }
+
+    private void collect(WatchKey key, Changes changes) {
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                changes.record(event.kind(), null);
+                continue;
+            }
+
+            Path path = directory.resolve((Path) event.context());
+            if (path.toString().endsWith(".epub")) {
+                changes.record(event.kind(), path);
+            }
+        }
+
+        key.reset();
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        thread.interrupt();
+    }
+
+    /**
+     * A coalesced batch of library changes.
+     *
+     * <p>
+     * Each path appears in at most one set. A file that was created and then deleted within the same batch does not appear at all,
+     * and a file that was deleted and then re-created is reported as changed.
+     *
+     * <p>
+     * A batch also tracks when its first and latest events were recorded, to decide when it is {@link #isReady() ready} to be delivered.
+     */
+    public static class Changes {
+
+        private final Set<Path> added = new LinkedHashSet<>();
+        private final Set<Path> changed = new LinkedHashSet<>();
+        private final Set<Path> removed = new LinkedHashSet<>();
+        private final LongSupplier clock;
+        private boolean overflow = false;
+        private long firstEventMillis;
+        private long lastEventMillis;
+
+        public Changes() {
+            this(System::currentTimeMillis);
+        }
+
+        /**
+         * @param clock source of the current time in milliseconds, used to time the quiet period and maximum batch delay
+         */
+        public Changes(LongSupplier clock) {
+            this.clock = clock;
+        }
+
+        /**
+         * Adds a single file system event to this batch.
+         *
+         * @param kind kind of the event, one of {@link StandardWatchEventKinds}
+         * @param path file the event is about, or {@code null} for {@link StandardWatchEventKinds#OVERFLOW}
+         */
+        public void record(WatchEvent.Kind<?> kind, @Nullable Path path) {
+            long now = clock.getAsLong();
+            if (isEmpty()) {
+                firstEventMillis = now;
+            }
+            lastEventMillis = now;
+
+            if (kind == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+            } else if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
+                created(path);
+            } else if (kind == StandardWatchEventKinds.ENTRY_MODIFY) {
+                modified(path);
+            } else if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+                deleted(path);
+            }
+        }
+
+        private void created(Path path) {
+            if (removed.remove(path)) {
+                changed.add(path);
+            } else {
+                added.add(path);
+            }
+        }
+
+        private void modified(Path path) {
+            if (!added.contains(path)) {
+                changed.add(path);
+            }
+        }
+
+        private void deleted(Path path) {
+            changed.remove(path);
+            if (!added.remove(path)) {
+                removed.add(path);
+            }
+        }
+
+        public Set<Path> getAdded() {
+            return added;
+        }
+
+        public Set<Path> getChanged() {
+            return changed;
+        }
+
+        public Set<Path> getRemoved() {
+            return removed;
+        }
+
+        /**
+         * @return {@code true} if the operating system dropped events, and the library directory should be rescanned to find all changes
+         */
+        public boolean isOverflow() {
+            return overflow;
+        }
+
+        public boolean isEmpty() {
+            return added.isEmpty() && changed.isEmpty() && removed.isEmpty() && !overflow;
+        }
+
+        /**
+         * @return {@code true} if this batch has changes, and either no event was recorded for {@link #QUIET_PERIOD_MILLIS}
+         *         or the first event was recorded at least {@link #MAX_BATCH_DELAY_MILLIS} ago
+         */
+        public boolean isReady() {
+            return !isEmpty() && getWaitMillis() == 0;
+        }
+
+        /**
+         * @return how long to wait for further events before this batch is ready, in milliseconds
+         */
+        public long getWaitMillis() {
+            long now = clock.getAsLong();
+            long quiet = lastEventMillis + QUIET_PERIOD_MILLIS - now;
+            long deadline = firstEventMillis + MAX_BATCH_DELAY_MILLIS - now;
+            return Math.max(0, Math.min(quiet, deadline));
+        }
+    }
+}
@@ -0,0 +1,484 @@
+package draylar.rose.api.page;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.awt.font.LineBreakMeasurer;
+import java.awt.font.TextAttribute;
+import java.awt.font.TextLayout;
+import java.text.AttributedString;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Lightweight block layout model, used to estimate the rendered height of body elements without a WebView.
+ *
+ * <p>
+ * Elements are tokenized into tags and text. Block-level tags (paragraphs, headings, lists, quotes...) start new boxes with the default
+ * WebKit margins, inline tags (bold, italic, small...) change the font of a text run, and every run of text is wrapped into lines with
+ * AWT's {@link LineBreakMeasurer} at the width of the page. Sizes follow {@code style/main.css}: 20px text and a 15px paragraph indent.
+ *
+ * <p>
+ * The model is an estimate. It does not apply the book's own stylesheets, and images without {@code width}/{@code height} attributes have no height.
+ * A {@link BoxLayout} is not thread-safe, but is cheap to create.
+ */
+public class BoxLayout {
+
+    public static final float FONT_SIZE = 20;
+    public static final float TEXT_INDENT = 15;
+    public static final float BLOCK_INDENT = 40;
+    public static final double MAX_IMAGE_HEIGHT = 900;
+
+    private static final Pattern TOKEN = Pattern.compile("<!--.*?-->|<!\\[CDATA\\[(.*?)]]>|<(/?)([a-zA-Z][a-zA-Z0-9]*)([^>]*?)(/?)>|([^<]+)|<", Pattern.DOTALL);
+    private static final Pattern ATTRIBUTE = Pattern.compile("\\b(width|height)\\s*=\\s*[\"']?(\\d+(?:\\.\\d+)?)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern ENTITY = Pattern.compile("&(#x[0-9a-fA-F]+|#[0-9]+|[a-zA-Z]+);");
+    private static final Set<String> VOID = Set.of("br", "img", "hr", "wbr", "meta", "link", "input", "col", "area", "source");
+    private static final Map<String, BlockStyle> BLOCKS = new HashMap<>();
+
+    static {
+        // Default WebKit margins and font sizes, in em of the element's own font.
+        block(1, 1, 0, "p");
+        block(2, 0.67, 0, "h1");
+        block(1.5, 0.83, 0, "h2");
+        block(1.17, 1, 0, "h3");
+        block(1, 1.33, 0, "h4");
+        block(0.83, 1.67, 0, "h5");
+        block(0.67, 2.33, 0, "h6");
+        block(1, 1, BLOCK_INDENT * 2, "blockquote", "figure");
+        block(1, 1, BLOCK_INDENT, "ul", "ol", "dl");
+        block(1, 1, 0, "pre");
+        block(1, 0, 0, "div", "section", "article", "aside", "header", "footer", "nav", "main", "li", "dt", "figcaption",
+                "table", "thead", "tbody", "tfoot", "tr", "td", "th", "caption", "center", "address", "hgroup", "body");
+        block(1, 0, BLOCK_INDENT, "dd");
+    }
+
+    private final double width;
+    private final FontRenderContext context = new FontRenderContext(null, true, true);
+    private final Map<String, Font> fonts = new HashMap<>();
+
+    /**
+     * @param width width of the page, in pixels
+     */
+    public BoxLayout(double width) {
+        this.width = width;
+    }
+
+    private static void block(double fontSize, double margin, float indent, String... tags) {
+        for (String tag : tags) {
+            BLOCKS.put(tag, new BlockStyle(fontSize, margin, indent));
+        }
+    }
+
+    /**
+     * Estimates the rendered size of a single body element.
+     *
+     * @param element serialized body element, such as {@code <p>Hello, <i>world</i>!</p>}
+     * @return the estimated {@link Box} of the element
+     */
+    public Box measure(String element) {
+        Measurement measurement = new Measurement();
+        Matcher matcher = TOKEN.matcher(element);
+
+        while (matcher.find()) {
+            if (matcher.group(6) != null) {
+                measurement.text(decode(matcher.group(6)));
+            } else if (matcher.group(1) != null) {
+                measurement.text(matcher.group(1));
+            } else if (matcher.group(3) != null) {
+                String tag = matcher.group(3).toLowerCase(Locale.ROOT);
+                boolean closing = !matcher.group(2).isEmpty();
+                boolean selfClosing = !matcher.group(5).isEmpty() || VOID.contains(tag);
+
+                if (closing) {
+                    measurement.close(tag);
+                } else {
+                    measurement.open(tag, matcher.group(4));
+                    if (selfClosing) {
+                        measurement.close(tag);
+                    }
+                }
+            } else if (matcher.group(0).equals("<")) {
+                measurement.text("<");
+            }
+        }
+
+        return measurement.finish();
+    }
+
+    private Font getFont(Style style) {
+        String family = style.monospace ? Font.MONOSPACED : Font.SERIF;
+        int weight = (style.bold ? Font.BOLD : 0) | (style.italic ? Font.ITALIC : 0);
+        String key = family + weight + style.size;
+        return fonts.computeIfAbsent(key, unused -> new Font(family, weight, 1).deriveFont(style.size));
+    }
+
+    private static String decode(String text) {
+        if (text.indexOf('&') == -1) {
+            return text;
+        }
+
+        return ENTITY.matcher(text).replaceAll(result -> {
+            String entity = result.group(1);
+            String decoded;
+
+            if (entity.startsWith("#x") || entity.startsWith("#X")) {
+                decoded = new String(Character.toChars(Integer.parseInt(entity.substring(2), 16)));
+            } else if (entity.startsWith("#")) {
+                decoded = new String(Character.toChars(Integer.parseInt(entity.substring(1))));
+            } else {
+                decoded = switch (entity) {
+                    case "amp" -> "&";
+                    case "lt" -> "<";
+                    case "gt" -> ">";
+                    case "quot" -> "\"";
+                    case "apos" -> "'";
+                    case "nbsp" -> "\u00A0";
+                    default -> "?"; // every other named entity is a single character
+                };
+            }
+
+            return Matcher.quoteReplacement(decoded);
+        });
+    }
+
+    /**
+     * Estimated size of an element: the height of its content, and the vertical margins around it (which collapse with the margins of its neighbours).
+     */
+    public static class Box {
+
+        private final double marginTop;
+        private final double height;
+        private final double marginBottom;
+        private final boolean image;
+
+        public Box(double marginTop, double height, double marginBottom, boolean image) {
+            this.marginTop = marginTop;
+            this.height = height;
+            this.marginBottom = marginBottom;
+            this.image = image;
+        }
+
+        public double getMarginTop() {
+            return marginTop;
+        }
+
+        public double getHeight() {
+            return height;
+        }
+
+        public double getMarginBottom() {
+            return marginBottom;
+        }
+
+        /**
+         * @return the height of this box including its margins
+         */
+        public double getOuterHeight() {
+            return marginTop + height + marginBottom;
+        }
+
+        /**
+         * @return {@code true} if this element contains an image
+         */
+        public boolean isImage() {
+            return image;
+        }
+    }
+
+    private static final class BlockStyle {
+
+        private final double fontSize;
+        private final double margin;
+        private final float indent;
+
+        private BlockStyle(double fontSize, double margin, float indent) {
+            this.fontSize = fontSize;
+            this.margin = margin;
+            this.indent = indent;
+        }
+    }
+
+    private static final class Style {
+
+        private final String tag;
+        private final float size;
+        private final boolean bold;
+        private final boolean italic;
+        private final boolean monospace;
+        private final boolean preformatted;
+        private final float indent;
+
+        private Style(String tag, float size, boolean bold, boolean italic, boolean monospace, boolean preformatted, float indent) {
+            this.tag = tag;
+            this.size = size;
+            this.bold = bold;
+            this.italic = italic;
+            this.monospace = monospace;
+            this.preformatted = preformatted;
+            this.indent = indent;
+        }
+
+        private Style child(String tag, @Nullable BlockStyle block) {
+            float size = this.size;
+            boolean bold = this.bold;
+            boolean italic = this.italic;
+            boolean monospace = this.monospace;
+            boolean preformatted = this.preformatted;
+            float indent = this.indent;
+
+            if (block != null) {
+                size *= block.fontSize;
+                indent += block.indent;
+            }
+
+            switch (tag) {
+                case "b", "strong", "th", "h1", "h2", "h3", "h4", "h5", "h6", "dt" -> bold = true;
+                case "i", "em", "cite", "var", "dfn", "address" -> italic = true;
+                case "code", "kbd", "samp", "tt" -> monospace = true;
+                case "pre" -> {
+                    monospace = true;
+                    preformatted = true;
+                }
+                case "small", "sub", "sup" -> size *= 0.83f;
+                case "big" -> size *= 1.2f;
+            }
+
+            return new Style(tag, size, bold, italic, monospace, preformatted, indent);
+        }
+    }
+
+    private static final class Run {
+
+        private final int start;
+        private final int end;
+        private final Font font;
+
+        private Run(int start, int end, Font font) {
+            this.start = start;
+            this.end = end;
+            this.font = font;
+        }
+    }
+
+    /**
+     * Walks the tokens of a single element, stacking boxes vertically.
+     */
+    private final class Measurement {
+
+        private final Deque<Style> styles = new ArrayDeque<>();
+        private final StringBuilder text = new StringBuilder();
+        private final List<Run> runs = new ArrayList<>();
+        private double marginTop = 0;
+        private double height = 0;
+        private double pendingMargin = 0;
+        private boolean empty = true;
+        private boolean image = false;
+        private float firstLineIndent = 0;
+
+        private Measurement() {
+            styles.push(new Style("body", FONT_SIZE, false, false, false, false, 0));
+        }
+
+        private void open(String tag, String attributes) {
+            BlockStyle block = BLOCKS.get(tag);
+
+            switch (tag) {
+                case "br" -> {
+                    // A line break ends the current line, or adds an empty line if there is no text on it.
+                    if (!flush()) {
+                        addHeight(lineHeight(styles.peek()));
+                    }
+                    return;
+                }
+                case "img", "svg", "image" -> {
+                    flush();
+                    image = true;
+                    addHeight(imageHeight(attributes));
+                }
+                case "hr" -> {
+                    flush();
+                    margin(styles.peek().size * 0.5);
+                    addHeight(2);
+                    margin(styles.peek().size * 0.5);
+                }
+            }
+
+            if (block != null) {
+                flush();
+                Style style = styles.peek().child(tag, block);
+                margin(style.size * block.margin);
+                firstLineIndent = tag.equals("p") ? TEXT_INDENT : 0;
+                styles.push(style);
+            } else if (!VOID.contains(tag)) {
+                styles.push(styles.peek().child(tag, null));
+            }
+        }
+
+        private void close(String tag) {
+            if (VOID.contains(tag)) {
+                return;
+            }
+
+            // Only pop if the tag was actually opened, so stray end tags do not unbalance the stack.
+            if (styles.stream().noneMatch(style -> style.tag.equals(tag)) || styles.size() == 1) {
+                return;
+            }
+
+            BlockStyle block = BLOCKS.get(tag);
+            if (block != null) {
+                flush();
+            }
+
+            Style closed;
+            do {
+                closed = styles.pop();
+            } while (!closed.tag.equals(tag) && styles.size() > 1);
+
+            if (block != null) {
+                margin(closed.size * block.margin);
+            }
+        }
+
+        private void text(String content) {
+            Style style = styles.peek();
+            String collapsed = style.preformatted ? content : content.replaceAll("\\s+", " ");
+
+            // Leading white-space of a line is not rendered.
+            if (!style.preformatted && (text.length() == 0 || text.charAt(text.length() - 1) == ' ') && collapsed.startsWith(" ")) {
+                collapsed = collapsed.substring(1);
+            }
+
+            if (collapsed.isEmpty()) {
+                return;
+            }
+
+            int start = text.length();
+            text.append(collapsed);
+            runs.add(new Run(start, text.length(), getFont(style)));
+        }
+
+        /**
+         * Lays out the pending text as a line box.
+         *
+         * @return {@code true} if there was text to lay out
+         */
+        private boolean flush() {
+            String content = text.toString();
+            boolean hasText = !content.isBlank();
+
+            if (hasText) {
+                Style style = styles.peek();
+                float available = (float) Math.max(1, width - style.indent);
+                double lines = 0;
+
+                if (style.preformatted) {
+                    int start = 0;
+                    for (String line : content.split("\n", -1)) {
+                        lines += layout(start, start + line.length(), available, 0, style);
+                        start += line.length() + 1;
+                    }
+                } else {
+                    lines = layout(0, content.length(), available, firstLineIndent, style);
+                }
+
+                addHeight(lines);
+            }
+
+            text.setLength(0);
+            runs.clear();
+            firstLineIndent = 0;
+            return hasText;
+        }
+
+        private double layout(int from, int to, float available, float indent, Style style) {
+            String content = text.substring(from, to).stripTrailing();
+            if (content.isEmpty()) {
+                return lineHeight(style);
+            }
+
+            AttributedString attributed = new AttributedString(content);
+            for (Run run : runs) {
+                int start = Math.max(run.start, from) - from;
+                int end = Math.min(run.end, from + content.length()) - from;
+                if (start < end) {
+                    attributed.addAttribute(TextAttribute.FONT, run.font, start, end);
+                }
+            }
+
+            LineBreakMeasurer measurer = new LineBreakMeasurer(attributed.getIterator(), context);
+            double lines = 0;
+            boolean first = true;
+
+            while (measurer.getPosition() < content.length()) {
+                float lineWidth = Math.max(1, available - (first ? indent : 0));
+                TextLayout line = measurer.nextLayout(lineWidth);
+                lines += line.getAscent() + line.getDescent() + line.getLeading();
+                first = false;
+            }
+
+            return lines;
+        }
+
+        private double lineHeight(Style style) {
+            return getFont(style).getLineMetrics(" ", context).getHeight();
+        }
+
+        private double imageHeight(String attributes) {
+            double imageWidth = 0;
+            double imageHeight = 0;
+
+            Matcher matcher = ATTRIBUTE.matcher(attributes);
+            while (matcher.find()) {
+                if (matcher.group(1).equalsIgnoreCase("width")) {
+                    imageWidth = Double.parseDouble(matcher.group(2));
+                } else {
+                    imageHeight = Double.parseDouble(matcher.group(2));
+                }
+            }
+
+            // Images are scaled down to fit the page (max-width: 100%, max-height: 900px in main.css).
+            if (imageWidth > width) {
+                imageHeight *= width / imageWidth;
+            }
+
+            return Math.min(imageHeight, MAX_IMAGE_HEIGHT);
+        }
+
+        private void margin(double margin) {
+            pendingMargin = Math.max(pendingMargin, margin);
+        }
+
+        private void addHeight(double amount) {
+            // The margin before the first line box is the top margin of the whole element, and collapses with the previous element.
+            if (empty) {
+                marginTop = pendingMargin;
+                empty = false;
+            } else {
+                height += pendingMargin;
+            }
+
+            pendingMargin = 0;
+            height += amount;
+        }
+
+        private Box finish() {
+            flush();
+
+            // An element without any content (such as an empty div) collapses its margins into one.
+            if (empty) {
+                return new Box(pendingMargin, 0, 0, image);
+            }
+
+            return new Box(marginTop, height, pendingMargin, image);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package draylar.rose.api.page;
+
+import draylar.rose.api.task.LoadPriority;
+import draylar.rose.api.task.LoadScheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link Paginator} which computes page breaks in Java from a {@link BoxLayout} model of the body elements.
+ *
+ * <p>
+ * Each section is paginated as its own {@link LoadScheduler} task, so the sections of a book are paginated in parallel and the JavaFX thread is never blocked.
+ * Page heights are accumulated element by element, so paginating a section is linear in its number of elements.
+ */
+public class LayoutPaginator implements Paginator {
+
+    @Override
+    public CompletableFuture<List<PageRange>> calculatePages(List<String> elements, double height, double width) {
+        return LoadScheduler.get().supply(LoadPriority.VISIBLE, null, () -> paginate(elements, height, width));
+    }
+
+    /**
+     * Splits the given body elements into pages no taller than the given height.
+     *
+     * <p>
+     * Like the WebView engine, images always get a page of their own. An element which is taller than a page on its own is
+     * placed on its own page instead of being dropped.
+     *
+     * @param elements body elements of a section, in document order
+     * @param height height of each page
+     * @param width width of each page
+     * @return the pages of the section, each holding whole elements
+     */
+    public static List<PageRange> paginate(List<String> elements, double height, double width) {
+        BoxLayout layout = new BoxLayout(width);
+        List<PageRange> pages = new ArrayList<>();
+        int start = 0;
+        BoxLayout.Box last = null;
+        double pageHeight = 0;
+
+        for (int index = 0; index < elements.size(); index++) {
+            BoxLayout.Box box = layout.measure(elements.get(index));
+
+            // Images are always on their own page.
+            if (box.isImage()) {
+                if (start < index) {
+                    pages.add(PageRange.of(start, index));
+                }
+
+                pages.add(PageRange.of(index, index + 1));
+                start = index + 1;
+                last = null;
+                continue;
+            }
+
+            // Adjacent vertical margins collapse into the larger of the two.
+            double next = last == null
+                    ? box.getOuterHeight()
+                    : pageHeight - last.getMarginBottom() + Math.max(last.getMarginBottom(), box.getMarginTop()) + box.getHeight() + box.getMarginBottom();
+
+            if (next > height && last != null) {
+                pages.add(PageRange.of(start, index));
+                start = index;
+                next = box.getOuterHeight();
+            }
+
+            pageHeight = next;
+            last = box;
+        }
+
+        if (start < elements.size() || pages.isEmpty()) {
+            pages.add(PageRange.of(start, elements.size()));
+        }
+
+        return pages;
+    }
+}
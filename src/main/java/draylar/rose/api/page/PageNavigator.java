@@ -0,0 +1,430 @@
+package draylar.rose.api.page;
+
+import draylar.rose.api.Epub;
+import draylar.rose.api.book.SpineEntry;
+import draylar.rose.api.task.LoadPriority;
+import draylar.rose.api.task.LoadScheduler;
+import javafx.application.Platform;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Pages of an open book, paginated lazily around the reader's position.
+ *
+ * <p>
+ * Instead of paginating the whole spine before the first page can be shown, only the current section is paginated first. Other sections are
+ * prepared by the {@link SectionPrefetcher} as the reader gets close to them, and dropped again once they use more memory than it allows,
+ * so the time to the first page does not depend on the length of the book. Until the page count of every section before the reader is known,
+ * the reader's position is only known as "section + local page" (see {@link #getPageLabel()}).
+ *
+ * <p>
+ * Sections found in the book's {@link PaginationCache} are not paginated again, and newly paginated sections are added to the cache once
+ * no pagination is pending. Paginated sections are kept as {@link Section}s, and the document of a page is only built when the reader moves to it.
+ * The reader's {@link ReadingPosition} is stored whenever they move to another page, and {@link #open(ReadingPosition)} continues from it.
+ * All methods must be called on the JavaFX thread.
+ */
+public class PageNavigator {
+
+    private final Epub epub;
+    private final Paginator paginator;
+    private final SectionPipeline pipeline;
+    private final SectionPrefetcher prefetcher;
+    private final double width;
+    private final double height;
+    private final Consumer<String> display;
+    private final List<SpineEntry> spine;
+    private final List<CompletableFuture<Section>> sections;
+    @Nullable private final String cacheKey;
+    private final Map<String, List<PageRange>> known = new HashMap<>();
+    @Nullable private Runnable onPaginated;
+    @Nullable private volatile ReadingPosition position;
+    private boolean dirty = false;
+    private volatile boolean cacheQueued = false;
+    private boolean opened = false;
+    private int section = 0;
+    private int page = 0;
+
+    /**
+     * @param epub book to paginate
+     * @param engine engine to paginate sections with
+     * @param width width of each page
+     * @param height height of each page
+     * @param display called with the full HTML of a page whenever the reader moves to it
+     */
+    public PageNavigator(Epub epub, PaginationEngine engine, double width, double height, Consumer<String> display) {
+        this.epub = epub;
+        this.paginator = engine.create();
+        this.pipeline = new SectionPipeline(epub, SectionPipeline.MAX_IN_FLIGHT, Platform::runLater);
+        this.width = width;
+        this.height = height;
+        this.display = display;
+        this.spine = epub.getSpine();
+        this.sections = new ArrayList<>(Collections.nCopies(spine.size(), null));
+        this.prefetcher = new SectionPrefetcher(spine.size(), SectionPrefetcher.DISTANCE, SectionPrefetcher.BUDGET);
+
+        // Pages computed for the same book, window size and stylesheet are re-used from the book's pagination cache.
+        this.cacheKey = PaginationCache.createKey(epub, engine, width, height);
+        Map<String, List<PageRange>> cached = cacheKey == null ? null : PaginationCache.read(epub, cacheKey);
+        if (cached != null) {
+            known.putAll(cached);
+        }
+    }
+
+    /**
+     * Moves the reader to the given page of the given section, and starts paginating it if it has not been prefetched.
+     *
+     * @param section spine index of the section to open
+     * @param page page inside of the section to open, or {@code -1} for its last page
+     */
+    public void open(int section, int page) {
+        open(section, paginated -> page < 0 ? paginated.getPageCount() - 1 : Math.min(page, paginated.getPageCount() - 1));
+    }
+
+    /**
+     * Moves the reader to the page holding the given position. Only the section holding the position is paginated before it is shown,
+     * so restoring a position takes the same time anywhere in the book.
+     *
+     * @param position position to open, or {@code null} to open the first page of the book
+     */
+    public void open(@Nullable ReadingPosition position) {
+        if (position == null) {
+            open(0, 0);
+        } else {
+            open(position.getSection(), paginated -> paginated.findPage(position.getElement(), position.getOffset()));
+        }
+    }
+
+    /**
+     * @param section spine index of the section to open
+     * @param locate picks the page to open once the section has been paginated
+     */
+    private void open(int section, ToIntFunction<Section> locate) {
+        if (spine.isEmpty()) {
+            return;
+        }
+
+        int target = Math.max(0, Math.min(spine.size() - 1, section));
+        if (opened && target != this.section) {
+            prefetcher.record(getSection(target) != null);
+        }
+
+        opened = true;
+        this.section = target;
+        this.page = 0;
+
+        request(target).thenAccept(paginated -> {
+            // The reader may have moved on while the section was being paginated.
+            if (this.section == target) {
+                show(locate.applyAsInt(paginated));
+            }
+        });
+    }
+
+    /**
+     * Moves the reader one page forwards, continuing into the next section at the end of the current one.
+     */
+    public void next() {
+        Section current = getSection(section);
+        if (current == null) {
+            return;
+        }
+
+        if (page + 1 < current.getPageCount()) {
+            show(page + 1);
+        } else if (section + 1 < spine.size()) {
+            open(section + 1, 0);
+        }
+    }
+
+    /**
+     * Moves the reader one page back, continuing at the end of the previous section at the start of the current one.
+     */
+    public void previous() {
+        if (getSection(section) == null) {
+            return;
+        }
+
+        if (page > 0) {
+            show(page - 1);
+        } else if (section > 0) {
+            open(section - 1, -1);
+        }
+    }
+
+    private void show(int page) {
+        Section current = getSection(section);
+        if (current != null && page >= 0 && page < current.getPageCount()) {
+            this.page = page;
+            display.accept(current.getDocument(page));
+            savePosition(current.getPages().get(page));
+
+            for (int index : prefetcher.update(section, page, current.getPageCount())) {
+                request(index);
+            }
+
+            evict();
+        }
+    }
+
+    /**
+     * Builds the document of a page next to the reader, so it can be prepared before the reader moves to it.
+     *
+     * @param offset {@code -1} for the previous page, {@code 1} for the next page, or {@code 0} for the current page
+     * @return the document of the page at the given offset, or {@code null} if there is no such page or its section has not been paginated yet
+     */
+    @Nullable
+    public String getDocument(int offset) {
+        int targetSection = section;
+        int targetPage = page + offset;
+        Section current = getSection(targetSection);
+        if (current == null) {
+            return null;
+        }
+
+        // Pages past either end of the section are in the neighbouring section.
+        if (targetPage >= current.getPageCount()) {
+            targetSection++;
+            targetPage = 0;
+        } else if (targetPage < 0) {
+            targetSection--;
+            targetPage = -1;
+        }
+
+        Section target = targetSection >= 0 && targetSection < spine.size() ? getSection(targetSection) : null;
+        if (target == null) {
+            return null;
+        }
+
+        return target.getDocument(targetPage < 0 ? target.getPageCount() - 1 : targetPage);
+    }
+
+    /**
+     * @param onPaginated called on the JavaFX thread whenever a section has been paginated
+     */
+    public void setOnPaginated(@Nullable Runnable onPaginated) {
+        this.onPaginated = onPaginated;
+    }
+
+    private CompletableFuture<Section> request(int index) {
+        CompletableFuture<Section> future = sections.get(index);
+        if (future == null) {
+            future = paginate(index);
+            sections.set(index, future);
+
+            // Runs once the section's future has completed, so it no longer counts as pending.
+            future.thenRun(() -> {
+                saveIfIdle();
+                evict();
+                if (onPaginated != null) {
+                    onPaginated.run();
+                }
+            });
+        }
+
+        return future;
+    }
+
+    private CompletableFuture<Section> paginate(int index) {
+        SpineEntry entry = spine.get(index);
+        List<PageRange> cachedPages = known.get(entry.getIdref());
+
+        // Reading, decoding, rewriting and splitting the section happens once, in the pipeline.
+        // The pipeline delivers sections on the JavaFX thread, where pagination is started.
+        // Pages are only touched on the JavaFX thread, even if the engine paginates on worker threads.
+        // A section that fails to be read or paginated is shown as a single empty page, and is not cached.
+        return pipeline.request(index).thenCompose(read -> {
+            CompletableFuture<List<PageRange>> future = cachedPages != null
+                    ? CompletableFuture.completedFuture(cachedPages)
+                    : paginator.calculatePages(read.getElements(), height, width);
+
+            return future.exceptionally(error -> {
+                error.printStackTrace();
+                return null;
+            }).thenApplyAsync(result -> {
+                List<PageRange> pages = result == null ? List.of(PageRange.of(0, 0)) : result;
+                if (result != null && cachedPages == null && !read.isFailed()) {
+                    known.put(entry.getIdref(), pages);
+                    dirty = true;
+                }
+
+                return new Section(read, pages);
+            }, Platform::runLater);
+        });
+    }
+
+    /**
+     * Adds newly paginated sections to the pagination cache once nothing is being paginated anymore.
+     */
+    private void saveIfIdle() {
+        if (!dirty || cacheKey == null || sections.stream().anyMatch(future -> future != null && !future.isDone())) {
+            return;
+        }
+
+        dirty = false;
+        cacheQueued = true;
+        Map<String, List<PageRange>> snapshot = new HashMap<>(known);
+        LoadScheduler.get().run(LoadPriority.OFFSCREEN, epub.getLoadGroup(), () -> {
+            PaginationCache.write(epub, cacheKey, snapshot);
+            cacheQueued = false;
+        });
+    }
+
+    /**
+     * Writes the reader's position and any pages that are not in the pagination cache yet right away, instead of in the background.
+     * Background writes are queued behind other work and dropped when Rose exits, so this is called when the reader is closed.
+     */
+    public void flush() {
+        ReadingPosition latest = position;
+        if (latest != null) {
+            synchronized (ReadingPosition.class) {
+                ReadingPosition.write(epub, latest);
+            }
+        }
+
+        if (cacheKey != null && (dirty || cacheQueued)) {
+            dirty = false;
+            PaginationCache.write(epub, cacheKey, new HashMap<>(known));
+        }
+    }
+
+    /**
+     * Stores the start of the given page as the reader's position. Positions are written in the background, and each write stores the latest
+     * position, so a position written out of order is immediately replaced.
+     */
+    private void savePosition(PageRange range) {
+        ReadingPosition latest = new ReadingPosition(section, range.getStartElement(), range.getStartOffset());
+        if (latest.equals(position)) {
+            return;
+        }
+
+        position = latest;
+        LoadScheduler.get().run(LoadPriority.OFFSCREEN, epub.getLoadGroup(), () -> {
+            // The latest position is read while holding the write lock, so an older position can never be written after a newer one.
+            synchronized (ReadingPosition.class) {
+                ReadingPosition.write(epub, Objects.requireNonNull(position));
+            }
+        });
+    }
+
+    /**
+     * Drops the paginated sections the {@link SectionPrefetcher} no longer wants to hold. Their pages stay known, so they are not paginated again
+     * when the reader returns to them, and their content is taken from the {@link SectionCache} if it is still there.
+     */
+    private void evict() {
+        Map<Integer, Long> sizes = new HashMap<>();
+        for (int index = 0; index < spine.size(); index++) {
+            Section paginated = getSection(index);
+            if (paginated != null) {
+                sizes.put(index, paginated.getContent().getSize());
+            }
+        }
+
+        for (int index : prefetcher.evict(sizes)) {
+            sections.set(index, null);
+        }
+    }
+
+    /**
+     * @return the number of pages in the given section, or {@code -1} if it has not been paginated yet
+     */
+    private int countPages(int index) {
+        Section paginated = getSection(index);
+        if (paginated != null) {
+            return paginated.getPageCount();
+        }
+
+        List<PageRange> pages = known.get(spine.get(index).getIdref());
+        return pages == null ? -1 : pages.size();
+    }
+
+    @Nullable
+    private Section getSection(int index) {
+        CompletableFuture<Section> future = sections.get(index);
+        return future == null ? null : future.getNow(null);
+    }
+
+    /**
+     * @return the prefetcher deciding which sections are prepared ahead of the reader
+     */
+    public SectionPrefetcher getPrefetcher() {
+        return prefetcher;
+    }
+
+    /**
+     * @return the position of the reader, or {@code null} if no page has been shown yet
+     */
+    @Nullable
+    public ReadingPosition getPosition() {
+        return position;
+    }
+
+    /**
+     * @return the spine index of the section the reader is in
+     */
+    public int getSection() {
+        return section;
+    }
+
+    /**
+     * @return the page of the current section the reader is on
+     */
+    public int getLocalPage() {
+        return page;
+    }
+
+    /**
+     * @return the zero-indexed page of the whole book the reader is on, or {@code -1} if a section before the reader has not been paginated yet
+     */
+    public int getGlobalPage() {
+        int global = 0;
+        for (int index = 0; index < section; index++) {
+            int pages = countPages(index);
+            if (pages < 0) {
+                return -1;
+            }
+
+            global += pages;
+        }
+
+        return global + page;
+    }
+
+    /**
+     * @return the number of pages in the whole book, or {@code -1} if a section has not been paginated yet
+     */
+    public int getPageCount() {
+        int count = 0;
+        for (int index = 0; index < spine.size(); index++) {
+            int pages = countPages(index);
+            if (pages < 0) {
+                return -1;
+            }
+
+            count += pages;
+        }
+
+        return count;
+    }
+
+    /**
+     * @return a human-readable description of the reader's position, such as {@code Page 12 of 240}, or {@code Section 3, page 2} while the global page is unknown
+     */
+    public String getPageLabel() {
+        int global = getGlobalPage();
+        if (global < 0) {
+            return String.format("Section %d, page %d", section + 1, page + 1);
+        }
+
+        int count = getPageCount();
+        return count < 0 ? String.format("Page %d", global + 1) : String.format("Page %d of %d", global + 1, count);
+    }
+}
@@ -0,0 +1,108 @@
+package draylar.rose.api.page;
+
+import draylar.rose.api.HTMLHelper;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A page of a section, stored as a range over the section's body elements instead of a copy of its markup.
+ *
+ * <p>
+ * A page starts at a position and ends right before another. Each position is made of an element index and a character offset
+ * into that element's text content. Pages which only hold whole elements have an offset of {@code 0} at both ends. A page
+ * ending inside an element (because the element was too tall for a single page) ends at a non-zero offset, and the next page
+ * continues from that offset in the same element.
+ */
+public final class PageRange {
+
+    private final int startElement;
+    private final int startOffset;
+    private final int endElement;
+    private final int endOffset;
+
+    /**
+     * @param startElement index of the element the page starts in
+     * @param startOffset character offset into the text of the start element the page starts at
+     * @param endElement index of the element the page ends in, or the index after its last element if it ends at an element boundary
+     * @param endOffset character offset into the text of the end element the page ends before
+     */
+    public PageRange(int startElement, int startOffset, int endElement, int endOffset) {
+        this.startElement = startElement;
+        this.startOffset = startOffset;
+        this.endElement = endElement;
+        this.endOffset = endOffset;
+    }
+
+    /**
+     * @return a page holding the whole elements from {@code startElement} (inclusive) to {@code endElement} (exclusive)
+     */
+    public static PageRange of(int startElement, int endElement) {
+        return new PageRange(startElement, 0, endElement, 0);
+    }
+
+    /**
+     * Builds the body markup of this page from the elements of its section.
+     *
+     * <p>
+     * Whole elements are copied as-is. An element which is only partially on this page keeps all of its markup, but only the text inside
+     * of this page's range (see {@link HTMLHelper#sliceText(String, int, int)}).
+     *
+     * @param elements body elements of the section this page belongs to
+     * @return the body markup of this page
+     */
+    public String getBody(List<String> elements) {
+        StringBuilder body = new StringBuilder();
+        int last = endOffset == 0 ? endElement - 1 : endElement;
+
+        for (int index = startElement; index <= last && index < elements.size(); index++) {
+            int from = index == startElement ? startOffset : 0;
+            int to = index == endElement ? endOffset : Integer.MAX_VALUE;
+            String element = elements.get(index);
+            body.append(from == 0 && to == Integer.MAX_VALUE ? element : HTMLHelper.sliceText(element, from, to));
+        }
+
+        return body.toString();
+    }
+
+    /**
+     * @return {@code true} if this page does not hold any content
+     */
+    public boolean isEmpty() {
+        return startElement > endElement || (startElement == endElement && startOffset >= endOffset);
+    }
+
+    public int getStartElement() {
+        return startElement;
+    }
+
+    public int getStartOffset() {
+        return startOffset;
+    }
+
+    public int getEndElement() {
+        return endElement;
+    }
+
+    public int getEndOffset() {
+        return endOffset;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        PageRange range = (PageRange) o;
+        return startElement == range.startElement && startOffset == range.startOffset && endElement == range.endElement && endOffset == range.endOffset;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(startElement, startOffset, endElement, endOffset);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PageRange{%d:%d - %d:%d}", startElement, startOffset, endElement, endOffset);
+    }
+}
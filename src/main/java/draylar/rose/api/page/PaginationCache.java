@@ -0,0 +1,191 @@
+package draylar.rose.api.page;
+
+import draylar.rose.Rose;
+import draylar.rose.api.Epub;
+import draylar.rose.api.library.CatalogEntry;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * On-disk cache of computed pages, stored in each book's data directory.
+ *
+ * <p>
+ * Pages depend on the book's contents, the size of the reading area, the font settings and the reader stylesheet, so the cache is stored under a
+ * key built from all of them (see {@link #createKey(Epub, PaginationEngine, double, double)}). Re-opening a book with the same key skips pagination,
+ * while changing any part of the key (such as resizing the window) re-paginates the book and replaces the cache.
+ *
+ * <p>
+ * Pages are stored per {@link draylar.rose.api.book.SpineEntry}, keyed by idref, as the {@link PageRange}s produced by the {@link Paginator}.
+ * Only a few integers are stored per page, as the markup of each page is rebuilt from the section itself.
+ */
+public class PaginationCache {
+
+    public static final String FILE_NAME = "pagination.dat";
+    private static final int MAGIC = 0x524F5350; // "ROSP"
+    private static final int VERSION = 3;
+    private static final String STYLESHEET = "style/main.css";
+
+    @Nullable private static String stylesheetHash;
+
+    /**
+     * @return the location of the pagination cache of the given book
+     */
+    public static Path getPath(Epub epub) {
+        return epub.getDataDirectory().resolve(FILE_NAME);
+    }
+
+    /**
+     * Builds the cache key for paginating the given book with the given settings.
+     *
+     * <p>
+     * The book is identified by the size and modification time of its file, the same validity key the {@link CatalogEntry} uses,
+     * so building a key never reads the book itself.
+     *
+     * @param epub book being paginated
+     * @param engine engine the book is paginated with
+     * @param width width of each page
+     * @param height height of each page
+     * @return the cache key, or {@code null} if the book's file could not be read
+     */
+    @Nullable
+    public static String createKey(Epub epub, PaginationEngine engine, double width, double height) {
+        try {
+            Path file = epub.getRoot();
+            return String.format("%d@%d|%s|%dx%d|font=%s/%s|css=%s",
+                    Files.size(file),
+                    Files.getLastModifiedTime(file).toMillis(),
+                    engine.name(),
+                    Math.round(width),
+                    Math.round(height),
+                    BoxLayout.FONT_SIZE,
+                    BoxLayout.TEXT_INDENT,
+                    getStylesheetHash());
+        } catch (IOException ioException) {
+            ioException.printStackTrace();
+            return null;
+        }
+    }
+
+    private static synchronized String getStylesheetHash() throws IOException {
+        if (stylesheetHash == null) {
+            try (InputStream stream = Rose.class.getClassLoader().getResourceAsStream(STYLESHEET)) {
+                stylesheetHash = stream == null ? "" : CatalogEntry.hash(stream);
+            }
+        }
+
+        return stylesheetHash;
+    }
+
+    /**
+     * Reads the cached pages of the given book.
+     *
+     * @param epub book to read cached pages for
+     * @param key cache key the pages must have been stored under
+     * @return the cached pages of each section, keyed by spine idref, or {@code null} if there is no cache for the given key
+     */
+    @Nullable
+    public static Map<String, List<PageRange>> read(Epub epub, String key) {
+        return read(getPath(epub), key);
+    }
+
+    /**
+     * Reads cached pages from the given pagination cache file.
+     *
+     * @param location pagination cache file to read
+     * @param key cache key the pages must have been stored under
+     * @return the cached pages of each section, keyed by spine idref, or {@code null} if there is no cache for the given key
+     */
+    @Nullable
+    public static Map<String, List<PageRange>> read(Path location, String key) {
+        if (!Files.exists(location)) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(location))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(key)) {
+                return null;
+            }
+
+            int sectionCount = in.readInt();
+            Map<String, List<PageRange>> sections = new HashMap<>();
+            for (int i = 0; i < sectionCount; i++) {
+                String idref = in.readUTF();
+                int pageCount = in.readInt();
+                List<PageRange> pages = new ArrayList<>(pageCount);
+                for (int page = 0; page < pageCount; page++) {
+                    pages.add(new PageRange(in.readInt(), in.readInt(), in.readInt(), in.readInt()));
+                }
+
+                sections.put(idref, pages);
+            }
+
+            return sections;
+        } catch (IOException ioException) {
+            ioException.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the cached pages of the given book.
+     *
+     * @param epub book to cache pages for
+     * @param key cache key the pages were computed for
+     * @param sections pages of each section, keyed by spine idref
+     */
+    public static void write(Epub epub, String key, Map<String, List<PageRange>> sections) {
+        write(getPath(epub), key, sections);
+    }
+
+    /**
+     * Replaces the given pagination cache file.
+     *
+     * @param location pagination cache file to write
+     * @param key cache key the pages were computed for
+     * @param sections pages of each section, keyed by spine idref
+     */
+    public static synchronized void write(Path location, String key, Map<String, List<PageRange>> sections) {
+        try {
+            Files.createDirectories(location.getParent());
+
+            // Write to a temporary file first so a partially written cache is never read.
+            Path temporary = location.resolveSibling(location.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(temporary))))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(key);
+                out.writeInt(sections.size());
+
+                for (Map.Entry<String, List<PageRange>> section : sections.entrySet()) {
+                    out.writeUTF(section.getKey());
+                    out.writeInt(section.getValue().size());
+                    for (PageRange page : section.getValue()) {
+                        out.writeInt(page.getStartElement());
+                        out.writeInt(page.getStartOffset());
+                        out.writeInt(page.getEndElement());
+                        out.writeInt(page.getEndOffset());
+                    }
+                }
+            }
+
+            Files.move(temporary, location, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ioException) {
+            ioException.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package draylar.rose.api.page;
+
+import draylar.rose.api.HeightHelper;
+
+import java.util.Locale;
+
+/**
+ * Available {@link Paginator} implementations.
+ *
+ * <p>
+ * {@link #WEBVIEW} measures every candidate page in hidden WebViews from the {@link draylar.rose.api.web.WebViewPool}, which matches the reader
+ * exactly but runs layout on the JavaFX thread while a book is being paginated. {@link #LAYOUT} estimates element heights with a Java text-metrics model ({@link BoxLayout}) on the
+ * {@link draylar.rose.api.task.LoadScheduler} pool, paginating every section in parallel without touching the JavaFX thread.
+ *
+ * <p>
+ * The engine used by the reader can be selected with the {@code rose.pagination} system property ({@code webview} or {@code layout}).
+ */
+public enum PaginationEngine {
+
+    WEBVIEW {
+        @Override
+        public Paginator create() {
+            return new HeightHelper();
+        }
+    },
+
+    LAYOUT {
+        @Override
+        public Paginator create() {
+            return new LayoutPaginator();
+        }
+    };
+
+    /**
+     * @return a new {@link Paginator} backed by this engine
+     */
+    public abstract Paginator create();
+
+    /**
+     * @return the engine selected through the {@code rose.pagination} system property, or {@link #WEBVIEW} if none was selected
+     */
+    public static PaginationEngine getDefault() {
+        String selected = System.getProperty("rose.pagination", WEBVIEW.name());
+
+        try {
+            return valueOf(selected.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException exception) {
+            System.out.printf("Unknown pagination engine %s, falling back to %s.%n", selected, WEBVIEW);
+            return WEBVIEW;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package draylar.rose.api.page;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Splits the body of a section into pages that each fit inside the reading area.
+ *
+ * @see PaginationEngine
+ */
+public interface Paginator {
+
+    /**
+     * Returns a {@link CompletableFuture} providing the pages of the given body elements, in order.
+     *
+     * <p>
+     * Each page will approximately span the height of the screen, but will not surpass it.
+     * Pages are ranges over the given elements (see {@link PageRange}), and at least one page is always returned.
+     *
+     * @param elements body elements of the section to paginate, as returned by {@link draylar.rose.api.HTMLHelper#getBody(String)}
+     * @param height height of each page
+     * @param width width of each page
+     * @return a {@link CompletableFuture} that provides pages covering the passed in elements
+     */
+    CompletableFuture<List<PageRange>> calculatePages(List<String> elements, double height, double width);
+}
@@ -0,0 +1,172 @@
+package draylar.rose.api.page;
+
+import draylar.rose.api.Epub;
+import draylar.rose.api.book.SpineEntry;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Position of the reader inside of a book, stored in the book's data directory so reading can continue where it was left off.
+ *
+ * <p>
+ * A position is made of the spine index of a section, and the element index and character offset of the start of the page the reader
+ * is on (see {@link PageRange}). Unlike a page number, it does not depend on the size of the window or on how earlier sections
+ * were paginated, so restoring it only needs the section it points into.
+ */
+public final class ReadingPosition {
+
+    public static final String FILE_NAME = "position.dat";
+    private static final int MAGIC = 0x524F5352; // "ROSR"
+    private static final int VERSION = 1;
+
+    private final int section;
+    private final int element;
+    private final int offset;
+
+    /**
+     * @param section spine index of the section
+     * @param element index of the body element inside of the section
+     * @param offset character offset into the text of the element
+     */
+    public ReadingPosition(int section, int element, int offset) {
+        this.section = section;
+        this.element = element;
+        this.offset = offset;
+    }
+
+    /**
+     * @return the location of the stored reading position of the given book
+     */
+    public static Path getPath(Epub epub) {
+        return epub.getDataDirectory().resolve(FILE_NAME);
+    }
+
+    /**
+     * Reads the stored reading position of the given book.
+     *
+     * @param epub book to read the position of
+     * @return the stored position, or {@code null} if there is none or the book's spine has changed since it was stored
+     */
+    @Nullable
+    public static ReadingPosition read(Epub epub) {
+        return read(epub, getPath(epub));
+    }
+
+    /**
+     * Reads a reading position of the given book from the given file.
+     *
+     * @param epub book the position belongs to
+     * @param location position file to read
+     * @return the stored position, or {@code null} if there is none or the book's spine has changed since it was stored
+     */
+    @Nullable
+    public static ReadingPosition read(Epub epub, Path location) {
+        if (!Files.exists(location)) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(location)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+
+            int section = in.readInt();
+            String idref = in.readUTF();
+            ReadingPosition position = new ReadingPosition(section, in.readInt(), in.readInt());
+
+            // The section is stored by index, and its idref is checked so an edited book does not open at the wrong place.
+            List<SpineEntry> spine = epub.getSpine();
+            return section >= 0 && section < spine.size() && spine.get(section).getIdref().equals(idref) ? position : null;
+        } catch (IOException ioException) {
+            ioException.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the stored reading position of the given book.
+     *
+     * @param epub book to store the position of
+     * @param position position of the reader
+     */
+    public static void write(Epub epub, ReadingPosition position) {
+        write(epub, getPath(epub), position);
+    }
+
+    /**
+     * Replaces the given position file.
+     *
+     * @param epub book the position belongs to
+     * @param location position file to write
+     * @param position position of the reader
+     */
+    public static synchronized void write(Epub epub, Path location, ReadingPosition position) {
+        try {
+            Files.createDirectories(location.getParent());
+
+            // Write to a temporary file first so a partially written position is never read.
+            Path temporary = location.resolveSibling(location.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(position.section);
+                out.writeUTF(epub.getSpine().get(position.section).getIdref());
+                out.writeInt(position.element);
+                out.writeInt(position.offset);
+            }
+
+            Files.move(temporary, location, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ioException) {
+            ioException.printStackTrace();
+        }
+    }
+
+    /**
+     * @return the spine index of the section
+     */
+    public int getSection() {
+        return section;
+    }
+
+    /**
+     * @return the index of the body element inside of the section
+     */
+    public int getElement() {
+        return element;
+    }
+
+    /**
+     * @return the character offset into the text of the element
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (!(other instanceof ReadingPosition)) return false;
+        ReadingPosition position = (ReadingPosition) other;
+        return section == position.section && element == position.element && offset == position.offset;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(section, element, offset);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ReadingPosition[section=%d, element=%d, offset=%d]", section, element, offset);
+    }
+}
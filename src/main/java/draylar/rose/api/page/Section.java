@@ -0,0 +1,79 @@
+package draylar.rose.api.page;
+
+import java.util.List;
+
+/**
+ * A paginated spine section.
+ *
+ * <p>
+ * The preprocessed {@link SectionContent} (markup around the body and the body elements) is stored once per section, and each page is only a
+ * {@link PageRange} over its elements. The full document of a page is only built when it is needed, through {@link #getDocument(int)}.
+ */
+public class Section {
+
+    private final SectionContent content;
+    private final List<PageRange> pages;
+
+    /**
+     * @param content preprocessed content of the section
+     * @param pages pages of the section, as ranges over its body elements
+     */
+    public Section(SectionContent content, List<PageRange> pages) {
+        this.content = content;
+        this.pages = pages;
+    }
+
+    /**
+     * Builds the full HTML document of the given page.
+     *
+     * @param page index of the page inside of this section
+     * @return the HTML document of the page, ready to be loaded into a WebView
+     */
+    public String getDocument(int page) {
+        String before = content.getBefore();
+        String body = pages.get(page).getBody(content.getElements());
+        String after = content.getAfter();
+        return new StringBuilder(before.length() + body.length() + after.length())
+                .append(before)
+                .append(body)
+                .append(after)
+                .toString();
+    }
+
+    /**
+     * Finds the page holding the given position, such as a stored {@link ReadingPosition}.
+     *
+     * @param element index of the body element the position is in
+     * @param offset character offset into the text of the element
+     * @return the index of the last page starting at or before the given position
+     */
+    public int findPage(int element, int offset) {
+        for (int page = pages.size() - 1; page > 0; page--) {
+            PageRange range = pages.get(page);
+            if (range.getStartElement() < element || (range.getStartElement() == element && range.getStartOffset() <= offset)) {
+                return page;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * @return the spine index of this section
+     */
+    public int getIndex() {
+        return content.getIndex();
+    }
+
+    public SectionContent getContent() {
+        return content;
+    }
+
+    public List<PageRange> getPages() {
+        return pages;
+    }
+
+    public int getPageCount() {
+        return pages.size();
+    }
+}
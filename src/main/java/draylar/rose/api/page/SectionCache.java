@@ -0,0 +1,248 @@
+package draylar.rose.api.page;
+
+import draylar.rose.api.Epub;
+import org.jetbrains.annotations.Nullable;
+
+import javax.management.NotificationEmitter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Shared, size-bounded in-memory cache of section content, used by everything that reads sections out of a book.
+ *
+ * <p>
+ * Sections are keyed by book, entry name and {@link Stage}, so the decoded markup of a section (as returned by {@link Epub#readSection})
+ * and its preprocessed {@link SectionContent} are cached separately. Books are told apart by their {@link Epub} instance rather than their path,
+ * as preprocessed sections refer to the {@link draylar.rose.api.web.EpubURLStreamHandler} id of the instance they were read from.
+ * Once the total size passes the byte budget, the least recently used sections are evicted. Evicted sections are simply read out of the book
+ * again the next time they are requested.
+ *
+ * <p>
+ * The budget defaults to 64 MB and can be changed with the {@code rose.sectionCache.bytes} system property. When the heap is still close to
+ * full after a garbage collection, the shared cache sheds half of its content, so cached sections never cause the reader to run out of memory.
+ */
+public class SectionCache {
+
+    private static final double PRESSURE_THRESHOLD = 0.85;
+    private static final SectionCache INSTANCE = new SectionCache(Long.getLong("rose.sectionCache.bytes", 64L * 1024 * 1024));
+
+    static {
+        INSTANCE.watchHeap();
+    }
+
+    private final long budget;
+    private final LinkedHashMap<Key, Object> sections = new LinkedHashMap<>(64, 0.75f, true);
+    private long size = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public SectionCache(long budget) {
+        this.budget = budget;
+    }
+
+    public static SectionCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Processing stages section content is cached at.
+     */
+    public enum Stage {
+        /**
+         * Decoded markup of a section, exactly as stored in the book. Cached as a {@link String}.
+         */
+        RAW,
+        /**
+         * Section with rewritten resource references, split into its body elements. Cached as a {@link SectionContent}.
+         */
+        SPLIT
+    }
+
+    /**
+     * @return the cached content of the given section at the given stage, or {@code null} if it is not currently in memory
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T getIfPresent(Epub epub, String name, Stage stage) {
+        return (T) sections.get(new Key(epub, name, stage));
+    }
+
+    /**
+     * Returns the content of the given section at the given stage, computing it if it is not in memory.
+     *
+     * <p>
+     * The loader runs outside of the cache's lock, so sections of other books can be read at the same time.
+     * Results of {@code null} are not cached.
+     *
+     * @param epub book the section belongs to
+     * @param name archive entry name of the section
+     * @param stage processing stage of the content
+     * @param loader computes the content if it is not cached
+     * @return the content of the section, or {@code null} if the loader returned {@code null}
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public <T> T get(Epub epub, String name, Stage stage, Supplier<T> loader) {
+        Key key = new Key(epub, name, stage);
+
+        synchronized (this) {
+            Object cached = sections.get(key);
+            if (cached != null) {
+                hits++;
+                return (T) cached;
+            }
+
+            misses++;
+        }
+
+        T loaded = loader.get();
+        if (loaded != null) {
+            synchronized (this) {
+                put(key, loaded);
+            }
+        }
+
+        return loaded;
+    }
+
+    private void put(Key key, Object content) {
+        Object previous = sections.put(key, content);
+        if (previous != null) {
+            size -= cost(previous);
+        }
+
+        size += cost(content);
+
+        // Evict the least recently used sections until we are back under budget. The newest section is always kept.
+        trim(budget, key);
+    }
+
+    private void trim(long target, @Nullable Key keep) {
+        Iterator<Map.Entry<Key, Object>> iterator = sections.entrySet().iterator();
+        while (size > target && iterator.hasNext()) {
+            Map.Entry<Key, Object> eldest = iterator.next();
+            if (eldest.getKey().equals(keep)) {
+                continue;
+            }
+
+            size -= cost(eldest.getValue());
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Evicts the least recently used half of the cached content, such as when the heap is running low.
+     */
+    public synchronized void shed() {
+        trim(size / 2, null);
+    }
+
+    /**
+     * Removes all cached sections of the given book, such as after it was changed or deleted.
+     */
+    public synchronized void invalidate(Path book) {
+        sections.entrySet().removeIf(entry -> {
+            if (entry.getKey().epub.getRoot().equals(book)) {
+                size -= cost(entry.getValue());
+                return true;
+            }
+
+            return false;
+        });
+    }
+
+    /**
+     * Sheds content whenever a heap pool is still above {@link #PRESSURE_THRESHOLD} of its maximum size right after a garbage collection.
+     */
+    private void watchHeap() {
+        try {
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                long max = pool.getUsage().getMax();
+                if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported() && max > 0) {
+                    pool.setCollectionUsageThreshold((long) (max * PRESSURE_THRESHOLD));
+                }
+            }
+
+            NotificationEmitter emitter = (NotificationEmitter) ManagementFactory.getMemoryMXBean();
+            emitter.addNotificationListener((notification, handback) -> {
+                if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+                    shed();
+                }
+            }, null, null);
+        } catch (Exception exception) {
+            exception.printStackTrace();
+        }
+    }
+
+    private static long cost(Object content) {
+        if (content instanceof SectionContent) {
+            return ((SectionContent) content).getSize();
+        } else if (content instanceof String) {
+            return ((String) content).length() * 2L;
+        }
+
+        return 0;
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("SectionCache[sections=%d, size=%dKB/%dKB, hits=%d, misses=%d, evictions=%d]",
+                sections.size(), size / 1024, budget / 1024, hits, misses, evictions);
+    }
+
+    private static final class Key {
+
+        private final Epub epub;
+        private final String name;
+        private final Stage stage;
+
+        private Key(Epub epub, String name, Stage stage) {
+            this.epub = epub;
+            this.name = name;
+            this.stage = stage;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) return true;
+            if (!(other instanceof Key)) return false;
+            Key key = (Key) other;
+            return epub == key.epub && name.equals(key.name) && stage == key.stage;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(epub, name, stage);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package draylar.rose.api.page;
+
+import draylar.rose.api.Epub;
+import draylar.rose.api.HTMLHelper;
+import draylar.rose.api.book.SpineEntry;
+import draylar.rose.api.web.ResourceRewriter;
+import javafx.util.Pair;
+
+import java.util.List;
+
+/**
+ * Preprocessed content of a spine section, ready to be paginated.
+ *
+ * <p>
+ * Preprocessing reads the section out of the archive, decodes it, rewrites its resource references (see {@link ResourceRewriter}), and splits it into
+ * the markup around its body and its top-level body elements. It only touches the book, so it runs once per section in the {@link SectionPipeline}.
+ * The result is kept with the paginated {@link Section}, so pages never need to go back to the archive, and in the shared {@link SectionCache},
+ * so re-opening the section does not need to either.
+ */
+public class SectionContent {
+
+    private final int index;
+    private final String before;
+    private final String after;
+    private final List<String> elements;
+    private final long size;
+    private final boolean failed;
+
+    /**
+     * @param index spine index of the section
+     * @param before document markup up to and including the start body tag
+     * @param after document markup from the end body tag onwards
+     * @param elements body elements of the section
+     */
+    public SectionContent(int index, String before, String after, List<String> elements) {
+        this(index, before, after, elements, false);
+    }
+
+    private SectionContent(int index, String before, String after, List<String> elements, boolean failed) {
+        this.index = index;
+        this.before = before;
+        this.after = after;
+        this.elements = elements;
+        this.failed = failed;
+
+        // Strings hold up to two bytes per character, which is close enough to budget prefetched sections.
+        long characters = before.length() + after.length();
+        for (String element : elements) {
+            characters += element.length();
+        }
+
+        this.size = characters * 2;
+    }
+
+    /**
+     * Reads and preprocesses the given section, running each stage of the {@link SectionPipeline} in order:
+     * reading the raw entry, decoding it, rewriting its resource references, and splitting its body.
+     *
+     * @param epub book to read the section from
+     * @param index spine index of the section
+     * @return the preprocessed section, or {@link #failed(int) failed} content if the section could not be read
+     */
+    public static SectionContent read(Epub epub, int index) {
+        SpineEntry entry = epub.getSpine().get(index);
+        String name = epub.getSectionName(entry);
+        if (name == null) {
+            return failed(index);
+        }
+
+        // Preprocessed sections are shared through the section cache, and decoded markup cached by other readers is re-used.
+        SectionContent content = SectionCache.get().get(epub, name, SectionCache.Stage.SPLIT, () -> {
+            String html = SectionCache.get().getIfPresent(epub, name, SectionCache.Stage.RAW);
+            if (html == null) {
+                byte[] bytes = epub.readBytes(name);
+                if (bytes == null) {
+                    return null;
+                }
+
+                html = HTMLHelper.decode(bytes);
+            }
+
+            html = ResourceRewriter.rewrite(epub, name, html);
+            Pair<String, String> template = HTMLHelper.getTemplate(html);
+            return new SectionContent(index, template.getKey(), template.getValue(), HTMLHelper.getBody(html));
+        });
+
+        if (content == null) {
+            return failed(index);
+        }
+
+        // The same section may appear more than once in a spine.
+        return content.getIndex() == index ? content : new SectionContent(index, content.before, content.after, content.elements);
+    }
+
+    /**
+     * @return empty content standing in for a section which could not be read or was cancelled, which is shown but never cached
+     */
+    public static SectionContent failed(int index) {
+        return new SectionContent(index, "", "", List.of(), true);
+    }
+
+    /**
+     * @return the spine index of this section
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public String getBefore() {
+        return before;
+    }
+
+    public String getAfter() {
+        return after;
+    }
+
+    public List<String> getElements() {
+        return elements;
+    }
+
+    /**
+     * @return the estimated number of bytes this section's markup takes up in memory
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return {@code true} if this content stands in for a section which could not be read, see {@link #failed(int)}
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+}
@@ -0,0 +1,132 @@
+package draylar.rose.api.page;
+
+import draylar.rose.api.Epub;
+import draylar.rose.api.task.LoadPriority;
+import draylar.rose.api.task.LoadScheduler;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Preprocesses the spine sections of a book concurrently, and delivers them in spine order.
+ *
+ * <p>
+ * Each requested section runs through the preprocessing stages (read, decode, rewrite, split; see {@link SectionContent#read(Epub, int)}) as its
+ * own {@link LoadScheduler} task, so several sections are preprocessed at once. At most {@link #getMaxInFlight()} sections are held by the pipeline
+ * at a time, from the moment they are started until they are delivered. Further requests wait until an earlier section is delivered, which bounds
+ * the memory used by sections that are not being read yet.
+ *
+ * <p>
+ * Sections which finish early are held back until every section before them that is still running has finished too, and are then delivered
+ * in spine order through the delivery executor (the JavaFX thread in the reader).
+ */
+public class SectionPipeline {
+
+    /**
+     * Default number of sections held by a pipeline at once, configurable with the {@code rose.pipeline.inFlight} system property.
+     */
+    public static final int MAX_IN_FLIGHT = Math.max(1, Integer.getInteger("rose.pipeline.inFlight", 4));
+
+    private final Epub epub;
+    private final Executor delivery;
+    private final int maxInFlight;
+    private final Semaphore permits;
+    private final Deque<Integer> queued = new ArrayDeque<>();
+    private final Map<Integer, CompletableFuture<SectionContent>> requested = new HashMap<>();
+    private final TreeSet<Integer> running = new TreeSet<>();
+    private final TreeMap<Integer, SectionContent> finished = new TreeMap<>();
+
+    /**
+     * @param epub book to preprocess sections of
+     * @param maxInFlight maximum number of sections held by the pipeline at once
+     * @param delivery executor the futures returned by {@link #request(int)} are completed on
+     */
+    public SectionPipeline(Epub epub, int maxInFlight, Executor delivery) {
+        this.epub = epub;
+        this.delivery = delivery;
+        this.maxInFlight = maxInFlight;
+        this.permits = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Requests the given section. Sections are started in the order they are requested.
+     * Requesting a section again before it has been delivered returns the same future, while requesting it after it was delivered preprocesses it again.
+     *
+     * @param index spine index of the section
+     * @return a {@link CompletableFuture} completed with the preprocessed section once it is delivered
+     */
+    public synchronized CompletableFuture<SectionContent> request(int index) {
+        CompletableFuture<SectionContent> future = requested.get(index);
+        if (future == null) {
+            future = new CompletableFuture<>();
+            requested.put(index, future);
+            queued.addLast(index);
+            start();
+        }
+
+        return future;
+    }
+
+    /**
+     * Starts queued sections for as long as there are permits left.
+     */
+    private void start() {
+        while (!queued.isEmpty() && permits.tryAcquire()) {
+            int index = queued.pollFirst();
+            running.add(index);
+
+            LoadScheduler.get().supply(LoadPriority.VISIBLE, epub.getLoadGroup(), () -> SectionContent.read(epub, index)).whenComplete((content, error) -> {
+                if (error != null && !(error instanceof CancellationException)) {
+                    error.printStackTrace();
+                }
+
+                finish(index, content == null ? SectionContent.failed(index) : content);
+            });
+        }
+    }
+
+    private synchronized void finish(int index, SectionContent content) {
+        running.remove(index);
+        finished.put(index, content);
+
+        // Everything before the first section that is still running can be delivered.
+        // Deliveries are handed to the executor while holding the lock, so they reach it in spine order.
+        while (!finished.isEmpty() && (running.isEmpty() || finished.firstKey() < running.first())) {
+            Map.Entry<Integer, SectionContent> next = finished.pollFirstEntry();
+            CompletableFuture<SectionContent> future = requested.remove(next.getKey());
+            permits.release();
+            delivery.execute(() -> future.complete(next.getValue()));
+        }
+
+        start();
+    }
+
+    /**
+     * @return the maximum number of sections held by this pipeline at once
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * @return the number of sections started or waiting to be delivered
+     */
+    public int getInFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    /**
+     * @return the number of requested sections which have not been started yet
+     */
+    public synchronized int getQueued() {
+        return queued.size();
+    }
+}
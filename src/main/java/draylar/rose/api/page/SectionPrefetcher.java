@@ -0,0 +1,149 @@
+package draylar.rose.api.page;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides which sections of a book are prepared ahead of the reader, and which ones are dropped again.
+ *
+ * <p>
+ * The prefetcher follows the reader's position and direction of travel. Once the reader is within {@link #DISTANCE} pages of the end of
+ * a section in their direction of travel, the section after it is prefetched, so crossing into it does not stall. The section behind the
+ * reader is kept warm, so turning back is just as quick.
+ *
+ * <p>
+ * Prepared sections are held until their estimated size (see {@link SectionContent#getSize()}) exceeds the memory budget, after which the
+ * sections furthest from the reader are dropped first. The current section and the sections on either side of it are never dropped.
+ * Every time the reader enters another section, a hit (the section was ready) or a miss is counted.
+ */
+public class SectionPrefetcher {
+
+    /**
+     * Default number of pages before the end of a section at which the next section is prefetched, configurable with the {@code rose.prefetch.distance} system property.
+     */
+    public static final int DISTANCE = Math.max(0, Integer.getInteger("rose.prefetch.distance", 3));
+
+    /**
+     * Default number of bytes prepared sections may use, configurable with the {@code rose.prefetch.budget} system property.
+     */
+    public static final long BUDGET = Math.max(0, Long.getLong("rose.prefetch.budget", 48L * 1024 * 1024));
+
+    private final int sectionCount;
+    private final int distance;
+    private final long budget;
+    private int direction = 1;
+    private int section = -1;
+    private int page = 0;
+    private int hits = 0;
+    private int misses = 0;
+
+    /**
+     * @param sectionCount number of sections in the book's spine
+     * @param distance number of pages before the end of a section at which the next section is prefetched
+     * @param budget number of bytes prepared sections may use
+     */
+    public SectionPrefetcher(int sectionCount, int distance, long budget) {
+        this.sectionCount = sectionCount;
+        this.distance = distance;
+        this.budget = budget;
+    }
+
+    /**
+     * Moves the reader to the given page, and updates their direction of travel.
+     *
+     * @param section spine index of the section the reader is in
+     * @param page page of the section the reader is on
+     * @param pageCount number of pages in the section
+     * @return the spine indices of the sections which should be prepared, most urgent first
+     */
+    public List<Integer> update(int section, int page, int pageCount) {
+        if (this.section >= 0 && (section != this.section || page != this.page)) {
+            direction = section > this.section || (section == this.section && page > this.page) ? 1 : -1;
+        }
+
+        this.section = section;
+        this.page = page;
+
+        // Pages left until the reader reaches the end of the section in their direction of travel.
+        int remaining = direction > 0 ? pageCount - 1 - page : page;
+        List<Integer> wanted = new ArrayList<>(2);
+        int ahead = section + direction;
+        int behind = section - direction;
+        if (remaining < distance && ahead >= 0 && ahead < sectionCount) {
+            wanted.add(ahead);
+        }
+
+        if (behind >= 0 && behind < sectionCount) {
+            wanted.add(behind);
+        }
+
+        return wanted;
+    }
+
+    /**
+     * Counts the reader entering another section.
+     *
+     * @param ready {@code true} if the section was prepared before the reader entered it
+     */
+    public void record(boolean ready) {
+        if (ready) {
+            hits++;
+        } else {
+            misses++;
+        }
+    }
+
+    /**
+     * Picks the prepared sections which should be dropped to stay within the memory budget.
+     *
+     * @param sizes estimated size in bytes of each prepared section, by spine index
+     * @return the spine indices of the sections to drop, furthest from the reader first
+     */
+    public List<Integer> evict(Map<Integer, Long> sizes) {
+        long total = sizes.values().stream().mapToLong(Long::longValue).sum();
+        List<Integer> evicted = new ArrayList<>();
+        if (total <= budget) {
+            return evicted;
+        }
+
+        // Sections behind the reader are dropped before sections at the same distance ahead of them.
+        List<Integer> candidates = new ArrayList<>(sizes.keySet());
+        candidates.removeIf(index -> Math.abs(index - section) <= 1);
+        candidates.sort(Comparator.<Integer>comparingInt(index -> Math.abs(index - section)).reversed()
+                .thenComparingInt(index -> (index - section) * direction));
+
+        for (int index : candidates) {
+            if (total <= budget) {
+                break;
+            }
+
+            total -= sizes.get(index);
+            evicted.add(index);
+        }
+
+        return evicted;
+    }
+
+    /**
+     * @return the reader's direction of travel, {@code 1} for forwards and {@code -1} for backwards
+     */
+    public int getDirection() {
+        return direction;
+    }
+
+    /**
+     * @return the number of times the reader entered a section which was already prepared
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of times the reader entered a section which was not prepared yet
+     */
+    public int getMisses() {
+        return misses;
+    }
+}
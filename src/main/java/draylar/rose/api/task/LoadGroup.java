@@ -0,0 +1,23 @@
+package draylar.rose.api.task;
+
+/**
+ * Groups related {@link LoadScheduler} tasks (usually all tasks belonging to a single book) so they can be
+ * promoted or cancelled together.
+ */
+public class LoadGroup {
+
+    private final String name;
+
+    public LoadGroup(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
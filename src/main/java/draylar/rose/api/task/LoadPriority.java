@@ -0,0 +1,22 @@
+package draylar.rose.api.task;
+
+/**
+ * Priority lanes of the {@link LoadScheduler}, from most to least urgent.
+ */
+public enum LoadPriority {
+
+    /**
+     * Work for something the user can currently see, such as visible grid covers, the recent row, or the book being opened.
+     */
+    VISIBLE,
+
+    /**
+     * Work for books which are in the library but not currently on screen.
+     */
+    OFFSCREEN,
+
+    /**
+     * Bulk IO that nothing is waiting on yet, such as warming caches ahead of time.
+     */
+    IMAGES
+}
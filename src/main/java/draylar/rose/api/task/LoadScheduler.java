@@ -0,0 +1,225 @@
+package draylar.rose.api.task;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Central scheduler for background loading work (parsing books, decoding covers, preparing sections).
+ *
+ * <p>
+ * All work runs on a single bounded pool instead of a thread per book or image. Queued tasks are ordered by their {@link LoadPriority} lane,
+ * and then by submission order, so visible books are always served before off-screen books and bulk background IO.
+ * Tasks can be tagged with a {@link LoadGroup}, which allows all pending work of a book to be promoted or cancelled at once.
+ */
+public class LoadScheduler {
+
+    private static final LoadScheduler INSTANCE = new LoadScheduler(defaultThreadCount());
+
+    private final PriorityBlockingQueue<Runnable> queue = new PriorityBlockingQueue<>();
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final long createdAt = System.nanoTime();
+
+    public LoadScheduler(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, "Rose Loader #" + count.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        };
+
+        this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, queue, factory);
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return the shared {@link LoadScheduler} used by the library and reader
+     */
+    public static LoadScheduler get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Loading is a mix of disk-bound zip reads and CPU-bound image decoding.
+     * One thread per core keeps the decoder busy, but past a handful of threads the extra work only adds disk contention.
+     */
+    private static int defaultThreadCount() {
+        return Math.max(2, Math.min(Runtime.getRuntime().availableProcessors(), 6));
+    }
+
+    /**
+     * Schedules the given work.
+     *
+     * @param priority lane to schedule the work in
+     * @param group group the work belongs to, or {@code null} if it can not be promoted or cancelled as a group
+     * @param work work to run
+     * @return a {@link CompletableFuture} completed with the result of the work. Cancelling it before the work starts skips the work.
+     */
+    public <T> CompletableFuture<T> supply(LoadPriority priority, @Nullable LoadGroup group, Callable<T> work) {
+        Task<T> task = new Task<>(priority, group, work);
+        executor.execute(task);
+        return task.future;
+    }
+
+    /**
+     * @see #supply(LoadPriority, LoadGroup, Callable)
+     */
+    public CompletableFuture<Void> run(LoadPriority priority, @Nullable LoadGroup group, Runnable work) {
+        return supply(priority, group, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Moves all pending work of the given group into a more urgent lane.
+     * Work which is already in the given lane (or a more urgent one) is left alone.
+     *
+     * @param group group to promote
+     * @param priority lane to move the group's pending work to
+     */
+    public void promote(LoadGroup group, LoadPriority priority) {
+        for (Task<?> task : drain(task -> task.group == group && task.priority.compareTo(priority) > 0)) {
+            task.priority = priority;
+            executor.execute(task);
+        }
+    }
+
+    /**
+     * Cancels all pending work of the given group. Work which has already started is allowed to finish.
+     *
+     * @param group group to cancel
+     */
+    public void cancel(LoadGroup group) {
+        cancel(task -> task.group == group);
+    }
+
+    /**
+     * Cancels all pending work in the given lane whose group matches the given filter.
+     *
+     * @param priority lane to cancel work in
+     * @param filter groups to cancel work for
+     */
+    public void cancel(LoadPriority priority, Predicate<LoadGroup> filter) {
+        cancel(task -> task.priority == priority && filter.test(task.group));
+    }
+
+    private void cancel(Predicate<Task<?>> filter) {
+        for (Task<?> task : drain(filter)) {
+            if (task.future.cancel(false)) {
+                cancelled.incrementAndGet();
+            }
+        }
+    }
+
+    private List<Task<?>> drain(Predicate<Task<?>> filter) {
+        List<Task<?>> drained = new ArrayList<>();
+        queue.removeIf(runnable -> {
+            Task<?> task = (Task<?>) runnable;
+            return filter.test(task) && drained.add(task);
+        });
+
+        return drained;
+    }
+
+    /**
+     * @return the number of tasks waiting to run across all lanes
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of tasks waiting to run in the given lane
+     */
+    public int getQueueDepth(LoadPriority priority) {
+        int depth = 0;
+        for (Runnable runnable : queue) {
+            if (((Task<?>) runnable).priority == priority) {
+                depth++;
+            }
+        }
+
+        return depth;
+    }
+
+    /**
+     * @return the number of tasks currently running
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    public long getCancelledCount() {
+        return cancelled.get();
+    }
+
+    /**
+     * @return the average number of tasks completed per second since this scheduler was created
+     */
+    public double getThroughput() {
+        double seconds = (System.nanoTime() - createdAt) / 1_000_000_000.0;
+        return seconds <= 0 ? 0 : completed.get() / seconds;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LoadScheduler[queued=%d, active=%d, completed=%d, cancelled=%d, throughput=%.1f/s]",
+                getQueueDepth(), getActiveCount(), getCompletedCount(), getCancelledCount(), getThroughput());
+    }
+
+    private final class Task<T> implements Runnable, Comparable<Task<?>> {
+
+        private final long order = sequence.getAndIncrement();
+        @Nullable private final LoadGroup group;
+        private final Callable<T> work;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private volatile LoadPriority priority;
+
+        private Task(LoadPriority priority, @Nullable LoadGroup group, Callable<T> work) {
+            this.priority = priority;
+            this.group = group;
+            this.work = work;
+        }
+
+        @Override
+        public void run() {
+            // Cancelled through the returned future before this task was picked up.
+            if (future.isDone()) {
+                return;
+            }
+
+            try {
+                future.complete(work.call());
+            } catch (Throwable throwable) {
+                future.completeExceptionally(throwable);
+            } finally {
+                completed.incrementAndGet();
+            }
+        }
+
+        @Override
+        public int compareTo(Task<?> other) {
+            int lane = priority.compareTo(other.priority);
+            return lane != 0 ? lane : Long.compare(order, other.order);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package draylar.rose.api.web;
+
+import draylar.rose.api.Epub;
+import draylar.rose.api.PackageDocument;
+import draylar.rose.api.archive.EpubArchive;
+import draylar.rose.api.book.ManifestEntry;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLEncoder;
+import java.net.URLStreamHandler;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Serves the resources of open books to the {@link javafx.scene.web.WebView} through {@code rose-epub://<book id>/<entry name>} URLs.
+ *
+ * <p>
+ * Resources (images, stylesheets, fonts, SVG...) are streamed straight out of the book's {@link EpubArchive} when the WebView asks for them,
+ * so nothing is extracted to disk. Because the URLs mirror the directory layout of the archive, a section loaded with a
+ * {@code rose-epub://} base URL resolves its relative references exactly like it would inside the .epub file.
+ *
+ * <p>
+ * {@link #install()} must be called once before any {@code rose-epub://} URL is created, and books must be {@link #register(Epub) registered}
+ * before their resources can be loaded.
+ */
+public class EpubURLStreamHandler extends URLStreamHandler {
+
+    public static final String PROTOCOL = "rose-epub";
+
+    private static final Map<String, Book> BOOKS = new HashMap<>();
+    private static final Map<Epub, String> IDS = new IdentityHashMap<>();
+    private static int nextId = 0;
+    private static boolean installed = false;
+
+    /**
+     * Registers this handler for the {@code rose-epub} protocol. Calling this method more than once has no effect.
+     *
+     * @return {@code true} if the handler is available, or {@code false} if another URL stream handler factory was already set
+     */
+    public static synchronized boolean install() {
+        if (!installed) {
+            try {
+                URL.setURLStreamHandlerFactory(protocol -> PROTOCOL.equals(protocol) ? new EpubURLStreamHandler() : null);
+                installed = true;
+            } catch (Error error) {
+                // A factory can only be set once per JVM.
+                error.printStackTrace();
+            }
+        }
+
+        return installed;
+    }
+
+    /**
+     * Makes the resources of the given book available through {@code rose-epub://} URLs.
+     *
+     * @param epub book to register
+     * @return the id of the book, used as the host of its URLs
+     */
+    public static synchronized String register(Epub epub) {
+        String id = IDS.get(epub);
+        if (id == null) {
+            id = "book" + nextId++;
+            IDS.put(epub, id);
+            BOOKS.put(id, new Book(epub));
+        }
+
+        return id;
+    }
+
+    /**
+     * Removes the given book, so its resources can no longer be loaded.
+     */
+    public static synchronized void unregister(Epub epub) {
+        String id = IDS.remove(epub);
+        if (id != null) {
+            BOOKS.remove(id);
+        }
+    }
+
+    /**
+     * Returns the URL of an entry inside the given book, registering the book if needed.
+     *
+     * @param epub book the entry belongs to
+     * @param name normalized entry name, such as {@code OEBPS/Text/chapter1.xhtml}
+     * @return a {@code rose-epub://} URL pointing to the entry
+     */
+    public static String getURL(Epub epub, String name) {
+        StringBuilder builder = new StringBuilder(PROTOCOL).append("://").append(register(epub));
+        for (String segment : EpubArchive.normalize(name).split("/")) {
+            builder.append('/').append(URLEncoder.encode(segment, StandardCharsets.UTF_8).replace("+", "%20"));
+        }
+
+        return builder.toString();
+    }
+
+    @Nullable
+    private static synchronized Book getBook(String id) {
+        return BOOKS.get(id);
+    }
+
+    @Override
+    protected URLConnection openConnection(URL url) {
+        return new EpubURLConnection(url);
+    }
+
+    private static final class Book {
+
+        private final Epub epub;
+        private final Map<String, String> mediaTypes = new HashMap<>();
+
+        private Book(Epub epub) {
+            this.epub = epub;
+
+            // The manifest declares the media type of every resource, which is more reliable than guessing from the file name.
+            PackageDocument packageDocument = epub.getPackageDocument();
+            if (packageDocument != null) {
+                for (ManifestEntry entry : packageDocument.getManifest()) {
+                    mediaTypes.put(packageDocument.resolve(entry), entry.getMediaType());
+                }
+            }
+        }
+
+        private String getMediaType(String name) {
+            String mediaType = mediaTypes.get(name);
+            if (mediaType != null && !mediaType.isBlank()) {
+                return mediaType;
+            }
+
+            String extension = name.substring(name.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+            return switch (extension) {
+                case "css" -> "text/css";
+                case "svg" -> "image/svg+xml";
+                case "xhtml" -> "application/xhtml+xml";
+                case "otf" -> "font/otf";
+                case "ttf" -> "font/ttf";
+                case "woff" -> "font/woff";
+                case "woff2" -> "font/woff2";
+                default -> {
+                    String guess = URLConnection.guessContentTypeFromName(name);
+                    yield guess == null ? "application/octet-stream" : guess;
+                }
+            };
+        }
+    }
+
+    private static final class EpubURLConnection extends URLConnection {
+
+        @Nullable private Book book;
+        @Nullable private String name;
+        @Nullable private EpubArchive archive;
+
+        private EpubURLConnection(URL url) {
+            super(url);
+        }
+
+        @Override
+        public void connect() throws IOException {
+            if (connected) {
+                return;
+            }
+
+            book = getBook(url.getHost());
+            if (book == null) {
+                throw new FileNotFoundException("No open book for " + url);
+            }
+
+            archive = book.epub.getArchive();
+            name = EpubArchive.resolve("", url.getPath());
+            if (archive == null || !archive.contains(name)) {
+                throw new FileNotFoundException("No entry " + name + " in " + book.epub.getRoot().getFileName());
+            }
+
+            connected = true;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            connect();
+            return archive.newInputStream(name);
+        }
+
+        @Override
+        public String getContentType() {
+            try {
+                connect();
+                return book.getMediaType(name);
+            } catch (IOException ioException) {
+                return null;
+            }
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            try {
+                connect();
+                return archive.getSize(name);
+            } catch (IOException ioException) {
+                return -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package draylar.rose.api.web;
+
+import draylar.rose.api.Epub;
+import draylar.rose.api.archive.EpubArchive;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rewrites the resource references of a section into absolute {@code rose-epub://} URLs.
+ *
+ * <p>
+ * HTML files reference images, stylesheets and fonts relative to their own location inside the archive. Every reference is resolved against
+ * the section's entry name and replaced with the URL served by {@link EpubURLStreamHandler}, so pages load their resources straight out of the
+ * .epub file no matter which document they are shown in. The following references are rewritten:
+ * <ul>
+ *     <li>{@code src}, {@code href}, {@code xlink:href}, {@code poster} and {@code data} attributes</li>
+ *     <li>{@code url(...)} in style attributes and style elements</li>
+ *     <li>{@code @import "..."} in style elements</li>
+ * </ul>
+ * Only tag markup and the contents of style elements are rewritten, so text which merely looks like a reference (such as escaped markup
+ * inside of a {@code <pre>} element, or prose mentioning {@code url(}) is kept as-is. Comments are skipped as well.
+ * Fragment-only references ({@code #note}), absolute URLs and data URIs are left alone.
+ */
+public class ResourceRewriter {
+
+    private static final String ATTRIBUTE = "(?<attribute>\\s(?:xlink:href|src|href|poster|data)\\s*=\\s*)(?<attributeQuote>[\"'])(?<attributeValue>.*?)\\k<attributeQuote>";
+    private static final String FUNCTION = "(?<function>url\\(\\s*)(?<functionQuote>[\"']?)(?<functionValue>[^\"')]*?)\\k<functionQuote>(?=\\s*\\))";
+    private static final String IMPORT = "(?<import>@import\\s+)(?<importQuote>[\"'])(?<importValue>.*?)\\k<importQuote>";
+
+    // Quoted attribute values may contain '>', so tags are matched value by value.
+    private static final Pattern MARKUP = Pattern.compile(
+            "(?<comment><!--.*?-->)"
+                    + "|(?<styleTag><style\\b(?:[^>\"']|\"[^\"]*\"|'[^']*')*>)(?<css>.*?)(?=</style\\s*>|$)"
+                    + "|(?<tag><[a-z](?:[^>\"']|\"[^\"]*\"|'[^']*')*>)",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern TAG_REFERENCE = Pattern.compile(ATTRIBUTE + "|" + FUNCTION, Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern STYLE_REFERENCE = Pattern.compile(FUNCTION + "|" + IMPORT, Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern SCHEME = Pattern.compile("^[a-zA-Z][a-zA-Z0-9+.-]*:");
+
+    /**
+     * @param epub book the section belongs to
+     * @param sectionName normalized entry name of the section, such as {@code OEBPS/Text/chapter1.xhtml}
+     * @param html text of the section
+     * @return the text of the section, with every resource reference replaced by an absolute {@code rose-epub://} URL
+     */
+    public static String rewrite(Epub epub, String sectionName, String html) {
+        String directory = EpubArchive.parentOf(sectionName);
+        Matcher markup = MARKUP.matcher(html);
+        StringBuilder ret = new StringBuilder(html.length() + html.length() / 8);
+        int last = 0;
+
+        while (markup.find()) {
+            ret.append(html, last, markup.start());
+
+            if (markup.group("styleTag") != null) {
+                rewrite(epub, directory, TAG_REFERENCE, markup.group("styleTag"), ret);
+                rewrite(epub, directory, STYLE_REFERENCE, markup.group("css"), ret);
+            } else if (markup.group("tag") != null) {
+                rewrite(epub, directory, TAG_REFERENCE, markup.group("tag"), ret);
+            } else {
+                ret.append(markup.group());
+            }
+
+            last = markup.end();
+        }
+
+        ret.append(html, last, html.length());
+        return ret.toString();
+    }
+
+    /**
+     * Appends the given markup to the builder, with every reference matched by the given pattern rewritten.
+     */
+    private static void rewrite(Epub epub, String directory, Pattern references, String markup, StringBuilder ret) {
+        Matcher matcher = references.matcher(markup);
+
+        while (matcher.find()) {
+            String kind;
+            if (references == TAG_REFERENCE && matcher.group("attribute") != null) {
+                kind = "attribute";
+            } else if (references == STYLE_REFERENCE && matcher.group("import") != null) {
+                kind = "import";
+            } else {
+                kind = "function";
+            }
+
+            String prefix = matcher.group(kind);
+            String quote = matcher.group(kind + "Quote");
+            String url = resolve(epub, directory, matcher.group(kind + "Value").strip());
+            matcher.appendReplacement(ret, Matcher.quoteReplacement(url == null ? matcher.group() : prefix + quote + url + quote));
+        }
+
+        matcher.appendTail(ret);
+    }
+
+    /**
+     * @return the {@code rose-epub://} URL of the given reference, or {@code null} if it does not point to a resource inside of the book
+     */
+    private static String resolve(Epub epub, String directory, String reference) {
+        if (reference.isEmpty() || reference.startsWith("#") || reference.startsWith("//") || SCHEME.matcher(reference).find()) {
+            return null;
+        }
+
+        // Attribute values are HTML text, but the only entity likely to show up in a path is an escaped '&'.
+        String href = reference.replace("&amp;", "&");
+        int fragment = href.indexOf('#');
+        String url = EpubURLStreamHandler.getURL(epub, EpubArchive.resolve(directory, href));
+        return fragment == -1 ? url : url + href.substring(fragment);
+    }
+}
@@ -0,0 +1,104 @@
+package draylar.rose.api.web;
+
+import draylar.rose.Rose;
+import javafx.scene.web.WebView;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Pool of off-screen {@link WebView}s used to measure content, such as pages during pagination.
+ *
+ * <p>
+ * A WebView can only hold one document at a time, so each measurement checks a WebView out of the pool, loads its content, and checks it back in
+ * once it is done with it. Several sections can be loaded and measured at once, while no two measurements ever share an engine.
+ * When every WebView is checked out, further requests wait in order until one is checked back in.
+ *
+ * <p>
+ * WebViews are created lazily, up to {@link #SIZE}. All methods must be called on the JavaFX thread.
+ */
+public class WebViewPool {
+
+    /**
+     * Maximum number of pooled WebViews, configurable with the {@code rose.measure.pool} system property.
+     */
+    public static final int SIZE = Math.max(1, Integer.getInteger("rose.measure.pool", defaultSize()));
+    private static final WebViewPool INSTANCE = new WebViewPool();
+
+    private final Deque<WebView> idle = new ArrayDeque<>();
+    private final Deque<CompletableFuture<WebView>> waiting = new ArrayDeque<>();
+    private int created = 0;
+
+    /**
+     * @return the shared {@link WebViewPool} used for measuring content
+     */
+    public static WebViewPool get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Each WebView carries its own WebKit engine, which is expensive to keep around.
+     * A few engines are enough to overlap the loading of several sections, as layout itself still runs on the JavaFX thread.
+     */
+    private static int defaultSize() {
+        return Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() / 2, 4));
+    }
+
+    /**
+     * Checks a WebView out of the pool. The WebView must be returned with {@link #checkIn(WebView)} once it is no longer used.
+     *
+     * @return a {@link CompletableFuture} completed with a WebView as soon as one is available
+     */
+    public CompletableFuture<WebView> checkOut() {
+        WebView view = idle.pollFirst();
+        if (view == null && created < SIZE) {
+            view = create();
+        }
+
+        if (view != null) {
+            return CompletableFuture.completedFuture(view);
+        }
+
+        CompletableFuture<WebView> future = new CompletableFuture<>();
+        waiting.addLast(future);
+        return future;
+    }
+
+    /**
+     * Returns a WebView to the pool, handing it to the oldest waiting request if there is one.
+     *
+     * @param view WebView previously returned by {@link #checkOut()}
+     */
+    public void checkIn(WebView view) {
+        CompletableFuture<WebView> next;
+        while ((next = waiting.pollFirst()) != null) {
+            if (next.complete(view)) {
+                return;
+            }
+        }
+
+        idle.addFirst(view);
+    }
+
+    private WebView create() {
+        created++;
+        WebView view = new WebView();
+        view.getEngine().setUserStyleSheetLocation(Rose.class.getClassLoader().getResource("style/main.css").toString());
+        return view;
+    }
+
+    /**
+     * @return the number of WebViews created by this pool
+     */
+    public int getCreated() {
+        return created;
+    }
+
+    /**
+     * @return the number of requests waiting for a WebView
+     */
+    public int getWaiting() {
+        return waiting.size();
+    }
+}
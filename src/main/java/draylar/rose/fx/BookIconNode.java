@@ -3,69 +3,110 @@ package draylar.rose.fx;
 import draylar.rose.Rose;
 import draylar.rose.api.Epub;
 import draylar.rose.api.EpubMetadata;
+import draylar.rose.api.cover.CoverCache;
+import draylar.rose.api.cover.CoverSize;
+import draylar.rose.api.task.LoadPriority;
+import draylar.rose.api.task.LoadScheduler;
 import javafx.animation.Interpolator;
 import javafx.animation.ScaleTransition;
 import javafx.application.Platform;
-import javafx.embed.swing.SwingFXUtils;
 import javafx.scene.control.Label;
+import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.VBox;
 import javafx.util.Duration;
-import org.imgscalr.Scalr;
-
-import java.awt.image.BufferedImage;
+import org.jetbrains.annotations.Nullable;
 
 public class BookIconNode extends VBox {
 
-    private ImageView coverImageView;
-    private final Epub book;
+    private final ImageView coverImageView;
+    private final Label titleLabel;
+    @Nullable private Epub book;
+    private boolean loadingCover = false;
 
     public BookIconNode(Epub book) {
-        this.book = book;
-
-        new Thread(() -> {
-            BufferedImage image = book.getCoverImage();
-            EpubMetadata metadata = book.getMetadata();
-
-            // JavaFX ImageView downscaling is very bad.
-            // To get around this, we manually downscale our images using imgscalr (https://github.com/rkalla/imgscalr).
-            if (image != null) {
-                image = Scalr.resize(image, 95, 142);
-            }
-
-            // Initialize book cover properties if it was properly loaded.
-            if (image != null) {
-                this.coverImageView = new ImageView(SwingFXUtils.toFXImage(image, null));
-            } else {
-                // TODO: in the future, this should load in an invalid cover image (such as a red book with an 'X' through it).
-                this.coverImageView = new ImageView();
-            }
-
-            // setup image properties
-            this.coverImageView.setPreserveRatio(true);
-            this.coverImageView.setFitWidth(200);
-            this.coverImageView.setFitHeight(142);
-            this.coverImageView.setSmooth(true);
+        this(book, LoadPriority.VISIBLE);
+    }
 
-            initializeHoverHandlers();
-            initializeOpenHandler();
+    /**
+     * @param book book displayed by this node
+     * @param priority {@link LoadScheduler} lane the cover of this node is loaded in
+     */
+    public BookIconNode(Epub book, LoadPriority priority) {
+        this();
+        bind(book, priority);
+    }
 
-            // Add elements to this node and adjust styles on the JavaFX thread
-            Platform.runLater(() -> {
-                getChildren().add(coverImageView);
-                this.coverImageView.setStyle("-fx-cursor: hand;");
+    /**
+     * Creates an empty {@link BookIconNode}, which can be bound to a book later on.
+     * Used by {@link LibraryGrid} to recycle nodes as the library is scrolled.
+     */
+    public BookIconNode() {
+        // setup image properties
+        // TODO: in the future, this should load in an invalid cover image (such as a red book with an 'X' through it).
+        this.coverImageView = new ImageView();
+        this.coverImageView.setPreserveRatio(true);
+        this.coverImageView.setFitWidth(200);
+        this.coverImageView.setFitHeight(142);
+        this.coverImageView.setSmooth(true);
+        this.coverImageView.setStyle("-fx-cursor: hand;");
+
+        // title underneath image
+        this.titleLabel = new Label();
+        this.titleLabel.setWrapText(true);
+
+        getChildren().addAll(coverImageView, titleLabel);
+        this.maxWidthProperty().bind(coverImageView.fitWidthProperty().multiply(.70f));
+        initializeHoverHandlers();
+        initializeOpenHandler();
+    }
 
-                // add title & author underneath image
-                if (metadata != null) {
-                    Label titleLabel = new Label(metadata.getTitle());
-                    titleLabel.setWrapText(true);
-                    getChildren().add(titleLabel);
-                }
+    /**
+     * Displays the given book in this node, fetching its cover through the shared {@link CoverCache}.
+     * If the cover was evicted since it was last shown, it is loaded again in the given lane.
+     *
+     * @param book book to display
+     * @param priority {@link LoadScheduler} lane the cover is loaded in if it is not cached
+     */
+    public void bind(Epub book, LoadPriority priority) {
+        if (this.book == book) {
+            return;
+        }
+
+        unbind();
+        this.book = book;
 
-                this.maxWidthProperty().bind(coverImageView.fitWidthProperty().multiply(.70f));
-            });
+        EpubMetadata metadata = book.getMetadata();
+        titleLabel.setText(metadata == null ? "" : metadata.getTitle());
+
+        Image cached = CoverCache.get().getIfPresent(book, CoverSize.GRID);
+        if (cached != null) {
+            coverImageView.setImage(cached);
+            return;
+        }
+
+        loadingCover = true;
+        CoverCache.get().load(book, CoverSize.GRID, priority).thenAccept(image -> Platform.runLater(() -> {
+            // This node may have been recycled for another book while the cover was loading.
+            if (this.book == book) {
+                loadingCover = false;
+                coverImageView.setImage(image);
+            }
+        }));
+    }
 
-        }).start();
+    /**
+     * Clears this node, and withdraws its cover request if the cover has not been loaded yet.
+     */
+    public void unbind() {
+        if (book != null && loadingCover) {
+            CoverCache.get().cancel(book, CoverSize.GRID);
+        }
+
+        book = null;
+        loadingCover = false;
+        coverImageView.setImage(null);
+        titleLabel.setText("");
     }
 
     // When the ImageView (cover/icon) of this book icon node is hovered over,
@@ -96,12 +137,13 @@ public class BookIconNode extends VBox {
 
     public void initializeOpenHandler() {
         coverImageView.setOnMouseClicked(event -> {
-            if (event.getClickCount() == 2) {
+            if (event.getClickCount() == 2 && book != null) {
                 Rose.open(book);
             }
         });
     }
 
+    @Nullable
     public Epub getBook() {
         return book;
     }
@@ -0,0 +1,190 @@
+package draylar.rose.fx;
+
+import draylar.rose.api.Epub;
+import draylar.rose.api.task.LoadPriority;
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.geometry.Bounds;
+import javafx.geometry.Orientation;
+import javafx.geometry.Point2D;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.layout.Region;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Virtualized grid of library books.
+ *
+ * <p>
+ * Unlike a {@link javafx.scene.layout.FlowPane} with one {@link BookIconNode} per book, this grid only materializes
+ * cells for the rows inside the viewport of its {@link ScrollPane}, plus {@link #BUFFER_ROWS} rows above and below.
+ * Cells that scroll out of view are unbound and recycled for the books scrolling in, so layout and CSS cost depend on
+ * the size of the window instead of the size of the library.
+ *
+ * <p>
+ * Without a viewport (see {@link #setViewport(ScrollPane)}), every book is materialized.
+ */
+public class LibraryGrid extends Region {
+
+    public static final double CELL_WIDTH = 140;
+    public static final double CELL_HEIGHT = 210;
+    public static final double HORIZONTAL_GAP = 20;
+    public static final double VERTICAL_GAP = 25;
+    public static final int BUFFER_ROWS = 2;
+
+    private final ObservableList<Epub> books = FXCollections.observableArrayList();
+    private final Map<Epub, BookIconNode> active = new IdentityHashMap<>();
+    private final Deque<BookIconNode> free = new ArrayDeque<>();
+    @Nullable private ScrollPane viewport;
+    @Nullable private Consumer<Epub> onSelect;
+
+    public LibraryGrid() {
+        books.addListener((ListChangeListener<Epub>) change -> requestLayout());
+    }
+
+    /**
+     * @return the books displayed by this grid, in display order
+     */
+    public ObservableList<Epub> getBooks() {
+        return books;
+    }
+
+    /**
+     * Sets the {@link ScrollPane} this grid is displayed in. Only cells inside its viewport are materialized.
+     */
+    public void setViewport(ScrollPane viewport) {
+        this.viewport = viewport;
+        viewport.vvalueProperty().addListener((observable, oldValue, newValue) -> requestLayout());
+        viewport.viewportBoundsProperty().addListener((observable, oldValue, newValue) -> requestLayout());
+        requestLayout();
+    }
+
+    /**
+     * Sets the action run when a book in this grid is clicked.
+     */
+    public void setOnSelect(@Nullable Consumer<Epub> onSelect) {
+        this.onSelect = onSelect;
+    }
+
+    @Override
+    public Orientation getContentBias() {
+        return Orientation.HORIZONTAL;
+    }
+
+    @Override
+    protected double computePrefWidth(double height) {
+        return snappedLeftInset() + CELL_WIDTH + snappedRightInset();
+    }
+
+    @Override
+    protected double computeMinHeight(double width) {
+        return computePrefHeight(width);
+    }
+
+    @Override
+    protected double computePrefHeight(double width) {
+        double contentWidth = width < 0 ? CELL_WIDTH : width - snappedLeftInset() - snappedRightInset();
+        int rows = (books.size() + getColumns(contentWidth) - 1) / getColumns(contentWidth);
+        double height = rows == 0 ? 0 : rows * (CELL_HEIGHT + VERTICAL_GAP) - VERTICAL_GAP;
+        return snappedTopInset() + height + snappedBottomInset();
+    }
+
+    private static int getColumns(double width) {
+        return Math.max(1, (int) ((width + HORIZONTAL_GAP) / (CELL_WIDTH + HORIZONTAL_GAP)));
+    }
+
+    @Override
+    protected void layoutChildren() {
+        double left = snappedLeftInset();
+        double top = snappedTopInset();
+        int columns = getColumns(getWidth() - left - snappedRightInset());
+        double rowHeight = CELL_HEIGHT + VERTICAL_GAP;
+
+        // Find the rows that are currently visible, in the coordinates of this grid.
+        int rows = (books.size() + columns - 1) / columns;
+        int firstVisible = 0;
+        int lastVisible = rows - 1;
+        if (viewport != null && viewport.getContent() != null) {
+            Bounds bounds = viewport.getViewportBounds();
+            Point2D origin = viewport.getContent().sceneToLocal(localToScene(0, 0));
+            double visibleTop = -bounds.getMinY() - origin.getY() - top;
+            firstVisible = (int) Math.floor(visibleTop / rowHeight);
+            lastVisible = (int) Math.floor((visibleTop + bounds.getHeight()) / rowHeight);
+        }
+
+        int firstRow = Math.max(0, firstVisible - BUFFER_ROWS);
+        int lastRow = Math.min(rows - 1, lastVisible + BUFFER_ROWS);
+        int from = Math.min(books.size(), firstRow * columns);
+        int to = Math.min(books.size(), (lastRow + 1) * columns);
+
+        // Recycle cells whose book scrolled out of range (or was removed).
+        Set<Epub> range = Collections.newSetFromMap(new IdentityHashMap<>());
+        range.addAll(books.subList(from, to));
+
+        Iterator<Map.Entry<Epub, BookIconNode>> iterator = active.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Epub, BookIconNode> entry = iterator.next();
+            if (!range.contains(entry.getKey())) {
+                BookIconNode cell = entry.getValue();
+                cell.unbind();
+                cell.setVisible(false);
+                free.push(cell);
+                iterator.remove();
+            }
+        }
+
+        // Bind and position a cell for every book in range.
+        for (int i = from; i < to; i++) {
+            Epub book = books.get(i);
+            int row = i / columns;
+            BookIconNode cell = active.get(book);
+
+            if (cell == null) {
+                cell = free.isEmpty() ? createCell() : free.pop();
+                LoadPriority priority = row >= firstVisible && row <= lastVisible ? LoadPriority.VISIBLE : LoadPriority.OFFSCREEN;
+                cell.bind(book, priority);
+                cell.setVisible(true);
+                active.put(book, cell);
+            }
+
+            double x = left + (i % columns) * (CELL_WIDTH + HORIZONTAL_GAP);
+            double y = top + row * rowHeight;
+            cell.resizeRelocate(snapPositionX(x), snapPositionY(y), CELL_WIDTH, CELL_HEIGHT);
+        }
+
+        // Keep a bounded pool of spare cells for when the window grows, and drop the rest.
+        int spare = (lastVisible - firstVisible + 1 + BUFFER_ROWS * 2) * columns - active.size();
+        while (free.size() > Math.max(spare, columns)) {
+            getChildren().remove(free.pop());
+        }
+    }
+
+    private BookIconNode createCell() {
+        BookIconNode cell = new BookIconNode();
+        cell.setManaged(false);
+        cell.setOnMouseClicked(event -> {
+            if (onSelect != null && cell.getBook() != null) {
+                onSelect.accept(cell.getBook());
+            }
+        });
+
+        getChildren().add(cell);
+        return cell;
+    }
+
+    /**
+     * @return the number of cells currently materialized by this grid, bound or not
+     */
+    public int getCellCount() {
+        return getChildren().size();
+    }
+}
@@ -0,0 +1,185 @@
+package draylar.rose.fx;
+
+import draylar.rose.api.web.WebViewHelper;
+import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.concurrent.Worker;
+import javafx.scene.layout.StackPane;
+import javafx.scene.web.WebView;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.IntFunction;
+
+/**
+ * Displays the pages of a book, keeping the pages before and after the current one ready in off-screen WebViews.
+ *
+ * <p>
+ * Loading a page into a WebView parses, styles and lays out the whole document, which is slow on image-heavy pages. This renderer
+ * stacks three WebViews on top of each other: the visible one holds the current page, while the hidden ones hold the previous and next pages.
+ * Turning to one of those pages only swaps which WebView is visible. The WebView that is no longer adjacent to the reader is then
+ * refilled with the new neighbouring page in the background.
+ *
+ * <p>
+ * The last and average turn times (until the new page has finished loading) are available through {@link #getLastTurnMillis()}
+ * and {@link #getAverageTurnMillis()}. When the {@code rose.debug} system property is set, neighbouring pages are not prepared,
+ * so every page is loaded into the same WebView and a debugger attached to {@link #getCurrentView()} keeps inspecting the visible page.
+ * The time of each turn is printed as well.
+ */
+public class PageTurnRenderer extends StackPane {
+
+    public static final boolean DEBUG = Boolean.getBoolean("rose.debug");
+
+    private WebView previous;
+    private WebView current;
+    private WebView next;
+    @Nullable private String previousDocument;
+    @Nullable private String currentDocument;
+    @Nullable private String nextDocument;
+    @Nullable private IntFunction<String> source;
+    private double lastTurnMillis = -1;
+    private double totalTurnMillis = 0;
+    private int turns = 0;
+
+    public PageTurnRenderer() {
+        previous = WebViewHelper.from("");
+        current = WebViewHelper.from("");
+        next = WebViewHelper.from("");
+        getChildren().addAll(previous, next, current);
+        updateVisibility();
+    }
+
+    /**
+     * Sets where the neighbouring pages come from.
+     *
+     * @param source returns the document of the page at the given offset from the current page ({@code -1} or {@code 1}), or {@code null} if it is not known yet
+     */
+    public void setSource(@Nullable IntFunction<String> source) {
+        this.source = source;
+    }
+
+    /**
+     * Shows the given page. If it is one of the prepared neighbouring pages, its WebView is swapped in instead of loading the page again.
+     *
+     * @param document HTML document of the page to show
+     */
+    public void show(String document) {
+        long start = System.nanoTime();
+        boolean prepared = true;
+
+        if (document.equals(nextDocument)) {
+            // Moving forwards: the current page becomes the previous page, and the old previous WebView is free to hold the new next page.
+            WebView free = previous;
+            previous = current;
+            previousDocument = currentDocument;
+            current = next;
+            currentDocument = nextDocument;
+            next = free;
+            nextDocument = null;
+        } else if (document.equals(previousDocument)) {
+            WebView free = next;
+            next = current;
+            nextDocument = currentDocument;
+            current = previous;
+            currentDocument = previousDocument;
+            previous = free;
+            previousDocument = null;
+        } else if (!document.equals(currentDocument)) {
+            // Not prepared (such as the first page, or a jump), so the page is loaded into the visible WebView.
+            prepared = false;
+            currentDocument = document;
+            reportWhenLoaded(current, start, false);
+            current.getEngine().loadContent(document);
+        }
+
+        updateVisibility();
+        if (prepared) {
+            reportWhenLoaded(current, start, true);
+        }
+
+        // Refill after the swap has been shown, so preparing the neighbours never delays the turn itself.
+        Platform.runLater(this::refill);
+    }
+
+    /**
+     * Loads the neighbouring pages into the hidden WebViews, unless they already hold them.
+     * Called after every turn, and whenever new pages become available.
+     */
+    public void refill() {
+        if (source == null || DEBUG) {
+            return;
+        }
+
+        String wantedPrevious = source.apply(-1);
+        if (wantedPrevious != null && !wantedPrevious.equals(previousDocument)) {
+            previousDocument = wantedPrevious;
+            previous.getEngine().loadContent(wantedPrevious);
+        }
+
+        String wantedNext = source.apply(1);
+        if (wantedNext != null && !wantedNext.equals(nextDocument)) {
+            nextDocument = wantedNext;
+            next.getEngine().loadContent(wantedNext);
+        }
+    }
+
+    private void updateVisibility() {
+        previous.setVisible(false);
+        next.setVisible(false);
+        current.setVisible(true);
+        current.toFront();
+    }
+
+    /**
+     * Reports the turn once the given WebView has finished loading. A prepared WebView may already be done, in which case the turn is reported right away.
+     */
+    private void reportWhenLoaded(WebView view, long start, boolean prepared) {
+        Worker<Void> worker = view.getEngine().getLoadWorker();
+        if (prepared && worker.getState() == Worker.State.SUCCEEDED) {
+            report(start, true);
+            return;
+        }
+
+        // Cancelled loads are skipped, as they belong to a page that was replaced before it finished loading.
+        worker.stateProperty().addListener(new ChangeListener<>() {
+            @Override
+            public void changed(ObservableValue<? extends Worker.State> value, Worker.State old, Worker.State state) {
+                if (state == Worker.State.SUCCEEDED || state == Worker.State.FAILED) {
+                    worker.stateProperty().removeListener(this);
+                    report(start, prepared);
+                }
+            }
+        });
+    }
+
+    private void report(long start, boolean prepared) {
+        lastTurnMillis = (System.nanoTime() - start) / 1_000_000.0;
+        totalTurnMillis += lastTurnMillis;
+        turns++;
+
+        if (DEBUG) {
+            System.out.printf("Page turn took %.1fms (%s).%n", lastTurnMillis, prepared ? "prepared" : "loaded");
+        }
+    }
+
+    /**
+     * @return the WebView showing the current page, which is always the same WebView in debug mode
+     */
+    public WebView getCurrentView() {
+        return current;
+    }
+
+    /**
+     * @return the time the last turn took until its page was loaded, in milliseconds, or {@code -1} if no page has been shown yet
+     */
+    public double getLastTurnMillis() {
+        return lastTurnMillis;
+    }
+
+    /**
+     * @return the average time a turn took until its page was loaded, in milliseconds, or {@code -1} if no page has been shown yet
+     */
+    public double getAverageTurnMillis() {
+        return turns == 0 ? -1 : totalTurnMillis / turns;
+    }
+}
@@ -1,7 +1,10 @@
 package draylar.rose.fx;
 
 import draylar.rose.api.Epub;
-import javafx.embed.swing.SwingFXUtils;
+import draylar.rose.api.cover.CoverCache;
+import draylar.rose.api.cover.CoverSize;
+import draylar.rose.api.task.LoadPriority;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.Label;
@@ -12,9 +15,6 @@ import javafx.scene.layout.Region;
 import javafx.scene.layout.VBox;
 import javafx.scene.text.Font;
 import javafx.scene.text.TextAlignment;
-import org.imgscalr.Scalr;
-
-import java.awt.image.BufferedImage;
 
 public class Sidebar extends VBox {
 
@@ -36,8 +36,16 @@ public class Sidebar extends VBox {
         setAlignment(Pos.TOP_CENTER);
 
         // generic image
-        BufferedImage resized = Scalr.resize(epub.getCoverImage(), 250, 250);
-        ImageView image = new ImageView(SwingFXUtils.toFXImage(resized, null));
+        // The sidebar-sized cover is fetched through the shared cover cache, and filled in once it is loaded.
+        ImageView image = new ImageView(CoverCache.get().getIfPresent(epub, CoverSize.SIDEBAR));
+        if(image.getImage() == null) {
+            CoverCache.get().load(epub, CoverSize.SIDEBAR, LoadPriority.VISIBLE).thenAccept(cover -> {
+                if(cover != null) {
+                    Platform.runLater(() -> image.setImage(cover));
+                }
+            });
+        }
+
         image.setFitHeight(250.0);
         image.setFitWidth(200);
         image.setPickOnBounds(true);
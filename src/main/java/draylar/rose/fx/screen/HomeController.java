@@ -1,5 +1,6 @@
 package draylar.rose.fx.screen;
 
+import draylar.rose.fx.LibraryGrid;
 import javafx.fxml.FXML;
 import javafx.scene.control.ScrollBar;
 import javafx.scene.control.ScrollPane;
@@ -13,7 +14,13 @@ public class HomeController {
     @FXML
     private ScrollBar scrollBar;
 
+    @FXML
+    private LibraryGrid allBooks;
+
     public void initialize() {
+        // Only the library rows inside the ScrollPane's viewport are materialized.
+        allBooks.setViewport(content);
+
         // The standard ScrollPane scrolling is too slow for our application. Speed it up!
         content.getContent().setOnScroll(event -> {
             double delta = event.getDeltaY() * 0.00001;
@@ -0,0 +1,111 @@
+package draylar.rose;
+
+import draylar.rose.api.archive.EpubArchive;
+import draylar.rose.api.archive.MappedZipArchive;
+import draylar.rose.api.archive.ZipFileSystemArchive;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public class EpubArchiveTest {
+
+    private static final Path THE_YOUNGEST_CAMEL = Paths.get("out/test/resources/the_youngest_camel.epub");
+    private static final Path ALICE_IN_WONDERLAND = Paths.get("out/test/resources/alice_in_wonderland.epub");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testIndexedLookup() throws IOException {
+        try (EpubArchive archive = EpubArchive.open(THE_YOUNGEST_CAMEL)) {
+            Assertions.assertTrue(archive.contains("META-INF/container.xml"));
+            Assertions.assertTrue(archive.contains("/OEBPS/content.opf"));
+            Assertions.assertFalse(archive.contains("OEBPS"));
+            Assertions.assertNotNull(archive.readString("mimetype"));
+        }
+    }
+
+    @Test
+    public void testMappedArchive() throws IOException {
+        for (Path book : new Path[] { THE_YOUNGEST_CAMEL, ALICE_IN_WONDERLAND }) {
+            try (EpubArchive expected = ZipFileSystemArchive.open(book); EpubArchive mapped = MappedZipArchive.open(book)) {
+                // The mapped reader sees the same entries with the same contents as the JDK zip file system.
+                Assertions.assertEquals(expected.getNames(), mapped.getNames());
+                for (String name : expected.getNames()) {
+                    Assertions.assertArrayEquals(expected.readBytes(name), mapped.readBytes(name), name);
+                    Assertions.assertEquals(expected.getSize(name), mapped.getSize(name), name);
+
+                    try (InputStream stream = mapped.newInputStream(name)) {
+                        Assertions.assertArrayEquals(expected.readBytes(name), stream.readAllBytes(), name);
+                    }
+                }
+            }
+        }
+
+        try (EpubArchive mapped = MappedZipArchive.open(THE_YOUNGEST_CAMEL)) {
+            // Uncompressed entries are views of the mapped file.
+            ByteBuffer mimetype = mapped.readBuffer("mimetype");
+            Assertions.assertNotNull(mimetype);
+            Assertions.assertTrue(mimetype.isDirect());
+            Assertions.assertEquals("application/epub+zip", StandardCharsets.US_ASCII.decode(mimetype).toString().trim());
+            Assertions.assertThrows(IOException.class, () -> mapped.newInputStream("OEBPS/missing.xhtml"));
+        }
+    }
+
+    @Test
+    public void testDamagedArchive() throws IOException {
+        byte[] bytes = Files.readAllBytes(THE_YOUNGEST_CAMEL);
+
+        // A central directory record whose comment runs past the end of the directory is rejected instead of being read out of bounds.
+        byte[] corrupt = bytes.clone();
+        int last = lastIndexOf(corrupt, new byte[] { 'P', 'K', 1, 2 });
+        corrupt[last + 32] = (byte) 0xFF;
+        corrupt[last + 33] = (byte) 0xFF;
+        Path damaged = directory.resolve("damaged.epub");
+        Files.write(damaged, corrupt);
+        Assertions.assertThrows(IOException.class, () -> MappedZipArchive.open(damaged));
+
+        // Entries of a mapped book which was truncated can no longer be read, but do not bring down the reader.
+        Path truncated = directory.resolve("truncated.epub");
+        Files.write(truncated, bytes);
+        try (EpubArchive mapped = MappedZipArchive.open(truncated)) {
+            try (FileChannel channel = FileChannel.open(truncated, StandardOpenOption.WRITE)) {
+                channel.truncate(0);
+            }
+
+            for (String name : mapped.getNames()) {
+                Assertions.assertNull(mapped.readBytes(name), name);
+                Assertions.assertThrows(IOException.class, () -> mapped.newInputStream(name).readAllBytes(), name);
+            }
+        }
+    }
+
+    private static int lastIndexOf(byte[] bytes, byte[] pattern) {
+        for (int index = bytes.length - pattern.length; index >= 0; index--) {
+            if (Arrays.equals(bytes, index, index + pattern.length, pattern, 0, pattern.length)) {
+                return index;
+            }
+        }
+
+        return -1;
+    }
+
+    @Test
+    public void testHrefResolution() {
+        Assertions.assertEquals("OEBPS/Images/cover.jpg", EpubArchive.resolve("OEBPS/Text", "../Images/cover.jpg"));
+        Assertions.assertEquals("OEBPS/chapter 1.xhtml", EpubArchive.resolve("OEBPS", "chapter%201.xhtml#start"));
+        Assertions.assertEquals("content.opf", EpubArchive.resolve("", "./content.opf"));
+        Assertions.assertEquals("OEBPS", EpubArchive.parentOf("OEBPS/content.opf"));
+    }
+}
@@ -0,0 +1,67 @@
+package draylar.rose;
+
+import draylar.rose.api.Epub;
+import draylar.rose.api.web.EpubURLStreamHandler;
+import draylar.rose.api.web.ResourceRewriter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public class EpubResourceTest {
+
+    private static final Path THE_YOUNGEST_CAMEL = Paths.get("out/test/resources/the_youngest_camel.epub");
+
+    @Test
+    public void testResourceURL() throws IOException {
+        Assertions.assertTrue(EpubURLStreamHandler.install());
+
+        try (Epub epub = new Epub(THE_YOUNGEST_CAMEL)) {
+            // Relative references resolve against the section, just like they would inside the archive.
+            String section = EpubURLStreamHandler.getURL(epub, "OEBPS/@public@vhost@g@gutenberg@html@files@64988@64988-h@64988-h-0.htm.html");
+            URL stylesheet = new URL(new URL(section), "pgepub.css");
+
+            URLConnection connection = stylesheet.openConnection();
+            Assertions.assertEquals("text/css", connection.getContentType());
+            try (InputStream inputStream = connection.getInputStream()) {
+                Assertions.assertEquals(epub.read("OEBPS/pgepub.css"), new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
+            }
+
+            // Books which are no longer open can not be read from.
+            EpubURLStreamHandler.unregister(epub);
+            Assertions.assertThrows(IOException.class, () -> stylesheet.openConnection().getInputStream());
+        }
+    }
+
+    @Test
+    public void testResourceRewriting() throws IOException {
+        try (Epub epub = new Epub(THE_YOUNGEST_CAMEL)) {
+            // Every kind of reference is resolved against the section, while links inside of the page and to other sites are kept.
+            String root = "rose-epub://" + EpubURLStreamHandler.register(epub) + "/OEBPS/";
+            String html = """
+                    <link rel="stylesheet" href="pgepub.css"/><style>@import "extra.css"; p { background: url('images/bg.png'); }</style>
+                    <img src="images/my%20cover.jpg"/><svg><image xlink:href="../cover.jpg"/></svg>
+                    <a href="#note">note</a><a href="chapter2.xhtml#start">next</a><a href="https://example.com/">site</a>""";
+
+            Assertions.assertEquals("""
+                    <link rel="stylesheet" href="%1$spgepub.css"/><style>@import "%1$sextra.css"; p { background: url('%1$simages/bg.png'); }</style>
+                    <img src="%1$simages/my%%20cover.jpg"/><svg><image xlink:href="%2$scover.jpg"/></svg>
+                    <a href="#note">note</a><a href="%1$schapter2.xhtml#start">next</a><a href="https://example.com/">site</a>"""
+                    .formatted(root, root.substring(0, root.length() - "OEBPS/".length())),
+                    ResourceRewriter.rewrite(epub, "OEBPS/chapter1.xhtml", html));
+
+            // Text which only looks like a reference is not part of any tag, and is kept as-is.
+            String text = """
+                    <pre>&lt;img src="cover.jpg"/&gt;</pre><p title="a > b" data-note="1">Use url(x.png) or src="y.png".</p><!-- <img src="z.png"/> -->""";
+            Assertions.assertEquals(text, ResourceRewriter.rewrite(epub, "OEBPS/chapter1.xhtml", text));
+
+            EpubURLStreamHandler.unregister(epub);
+        }
+    }
+}
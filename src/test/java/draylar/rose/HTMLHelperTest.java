@@ -1,9 +1,11 @@
 package draylar.rose;
 
 import draylar.rose.api.HTMLHelper;
+import javafx.util.Pair;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
 
@@ -22,9 +24,9 @@ public class HTMLHelperTest {
                 <div id="test">
                     <p>hi</p>
                 </div>
-                        
+
                 <p>Hello, world!</p>
-                
+
                 <img id="CoverImage" src="../Images/cover.jpg" class="Cover" alt="Cover"/>
             </body>
             </html>
@@ -60,4 +62,44 @@ public class HTMLHelperTest {
         Assertions.assertEquals("<body>", HTMLHelper.getStartBodyTag("jasdmnsanrn<body>sadnanrewajr"));
         Assertions.assertEquals("<body tag=\"hi\">", HTMLHelper.getStartBodyTag("jasdmnsanrn<body tag=\"hi\">sadnanrewajr"));
     }
+
+    @Test
+    public void testTemplate() {
+        Pair<String, String> template = HTMLHelper.getTemplate("<html><head><title>100%s</title></head><body class=\"a\"><p>hi</p></body></html>");
+        Assertions.assertEquals("<html><head><title>100%s</title></head><body class=\"a\">", template.getKey());
+        Assertions.assertEquals("</body></html>", template.getValue());
+    }
+
+    @Test
+    public void testSliceText() {
+        String paragraph = "<p class=\"a\">Hello, <em>big</em> &amp; bright world!</p>";
+
+        // Offsets count text content only, with entities counting as a single character.
+        Assertions.assertEquals("<p class=\"a\">Hello, <em>big</em> &amp; </p>", HTMLHelper.sliceText(paragraph, 0, 13));
+        Assertions.assertEquals("<p class=\"a\" style=\"text-indent: 0\"><em></em>bright world!</p>", HTMLHelper.sliceText(paragraph, 13, Integer.MAX_VALUE));
+        Assertions.assertEquals("<p style=\"text-indent: 0; color: red\">b</p>", HTMLHelper.sliceText("<p style=\"color: red\">ab</p>", 1, 2));
+    }
+
+    @Test
+    public void testTagSoup() {
+        // Unclosed paragraphs and misnested tags are fixed up the way a browser would, and text directly inside of the body is kept.
+        Assertions.assertEquals(
+                List.of("<p>one</p>", "<p>two <b>bold<i>both</i></b><i> italic</i></p>", "loose text"),
+                HTMLHelper.getBody("<p>one<p>two <b>bold<i>both</b> italic</i></p>loose text"));
+
+        // Entities declared in the doctype are expanded.
+        String declared = """
+                <!DOCTYPE html [
+                <!ENTITY D "&#8212;">
+                ]>
+                <html><body><p>a&D;b</p></body></html>""";
+        Assertions.assertEquals(List.of("<p>a\u2014b</p>"), HTMLHelper.getBody(declared));
+    }
+
+    @Test
+    public void testDecode() {
+        String html = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><html><body><p>caf\u00e9</p></body></html>";
+        Assertions.assertEquals(html, HTMLHelper.decode(html.getBytes(StandardCharsets.ISO_8859_1)));
+        Assertions.assertEquals("<p>caf\u00e9</p>", HTMLHelper.decode("\ufeff<p>caf\u00e9</p>".getBytes(StandardCharsets.UTF_8)));
+    }
 }
@@ -0,0 +1,60 @@
+package draylar.rose;
+
+import draylar.rose.api.page.BoxLayout;
+import draylar.rose.api.page.LayoutPaginator;
+import draylar.rose.api.page.PageRange;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class LayoutPaginatorTest {
+
+    private static final double WIDTH = 600;
+    private static final double HEIGHT = 800;
+
+    @Test
+    public void testBoxLayout() {
+        BoxLayout layout = new BoxLayout(WIDTH);
+        BoxLayout.Box line = layout.measure("<p>Hello, world!</p>");
+        BoxLayout.Box paragraph = layout.measure("<p>" + "Hello, world! ".repeat(200) + "</p>");
+
+        // Paragraphs have a 1em margin, and longer text wraps onto more lines.
+        Assertions.assertEquals(BoxLayout.FONT_SIZE, line.getMarginTop(), 0.01);
+        Assertions.assertTrue(line.getHeight() > 0);
+        Assertions.assertTrue(paragraph.getHeight() > line.getHeight() * 20);
+
+        // Headings are larger than paragraphs, and images are detected.
+        Assertions.assertTrue(layout.measure("<h1>Hello, world!</h1>").getHeight() > line.getHeight());
+        Assertions.assertTrue(layout.measure("<div><img src=\"a.png\" width=\"1200\" height=\"400\"/></div>").isImage());
+        Assertions.assertEquals(200, layout.measure("<img src=\"a.png\" width=\"1200\" height=\"400\"/>").getHeight(), 0.01);
+    }
+
+    @Test
+    public void testPagination() {
+        List<String> elements = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            elements.add("<p>Paragraph " + i + ". " + "Lorem ipsum dolor sit amet. ".repeat(i % 7 + 1) + "</p>");
+        }
+
+        elements.add(50, "<div><img src=\"cover.jpg\"/></div>");
+        List<PageRange> pages = LayoutPaginator.paginate(elements, HEIGHT, WIDTH);
+        List<String> bodies = new ArrayList<>();
+        for (PageRange page : pages) {
+            bodies.add(page.getBody(elements));
+        }
+
+        // No element is lost or reordered, and no page is empty.
+        Assertions.assertEquals(String.join("", elements), String.join("", bodies));
+        Assertions.assertTrue(pages.size() > 2);
+        for (int i = 0; i < pages.size(); i++) {
+            Assertions.assertFalse(pages.get(i).isEmpty());
+            Assertions.assertFalse(bodies.get(i).isEmpty());
+        }
+
+        // Images are on a page of their own.
+        Assertions.assertTrue(pages.contains(PageRange.of(50, 51)));
+        Assertions.assertTrue(bodies.contains("<div><img src=\"cover.jpg\"/></div>"));
+    }
+}
@@ -0,0 +1,142 @@
+package draylar.rose;
+
+import draylar.rose.api.library.LibraryWatcher;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class LibraryWatcherTest {
+
+    private static final Path A = Paths.get("a.epub");
+    private static final Path B = Paths.get("b.epub");
+    private static final Path C = Paths.get("c.epub");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testCoalescing() {
+        LibraryWatcher.Changes changes = new LibraryWatcher.Changes();
+        Assertions.assertTrue(changes.isEmpty());
+
+        // A new file is written in several steps, but is only reported as added.
+        changes.record(StandardWatchEventKinds.ENTRY_CREATE, A);
+        changes.record(StandardWatchEventKinds.ENTRY_MODIFY, A);
+        changes.record(StandardWatchEventKinds.ENTRY_MODIFY, A);
+
+        // A file which is replaced is reported as changed, and a file which only existed within the batch is not reported at all.
+        changes.record(StandardWatchEventKinds.ENTRY_DELETE, B);
+        changes.record(StandardWatchEventKinds.ENTRY_CREATE, B);
+        changes.record(StandardWatchEventKinds.ENTRY_CREATE, C);
+        changes.record(StandardWatchEventKinds.ENTRY_DELETE, C);
+
+        Assertions.assertEquals(Set.of(A), changes.getAdded());
+        Assertions.assertEquals(Set.of(B), changes.getChanged());
+        Assertions.assertEquals(Set.of(), changes.getRemoved());
+        Assertions.assertFalse(changes.isOverflow());
+
+        // A changed file which is then deleted is only reported as removed.
+        changes.record(StandardWatchEventKinds.ENTRY_DELETE, B);
+        Assertions.assertEquals(Set.of(), changes.getChanged());
+        Assertions.assertEquals(Set.of(B), changes.getRemoved());
+    }
+
+    @Test
+    public void testOverflow() {
+        LibraryWatcher.Changes changes = new LibraryWatcher.Changes();
+        changes.record(StandardWatchEventKinds.OVERFLOW, null);
+
+        // An overflow alone is still delivered, so the library gets rescanned.
+        Assertions.assertTrue(changes.isOverflow());
+        Assertions.assertFalse(changes.isEmpty());
+    }
+
+    @Test
+    public void testQuietPeriod() {
+        AtomicLong now = new AtomicLong();
+        LibraryWatcher.Changes changes = new LibraryWatcher.Changes(now::get);
+        Assertions.assertFalse(changes.isReady());
+
+        // A burst of files is held back while events keep arriving...
+        for (int i = 0; i < 20; i++) {
+            changes.record(StandardWatchEventKinds.ENTRY_CREATE, Paths.get(i + ".epub"));
+            now.addAndGet(10);
+        }
+
+        Assertions.assertFalse(changes.isReady());
+        Assertions.assertEquals(LibraryWatcher.QUIET_PERIOD_MILLIS - 10, changes.getWaitMillis());
+
+        // ...and is ready once no event has been recorded for the quiet period.
+        now.addAndGet(LibraryWatcher.QUIET_PERIOD_MILLIS - 11);
+        Assertions.assertFalse(changes.isReady());
+        now.addAndGet(1);
+        Assertions.assertTrue(changes.isReady());
+        Assertions.assertEquals(20, changes.getAdded().size());
+    }
+
+    @Test
+    public void testMaxBatchDelay() {
+        AtomicLong now = new AtomicLong();
+        LibraryWatcher.Changes changes = new LibraryWatcher.Changes(now::get);
+
+        // The directory never goes quiet, but the batch is still ready once the maximum delay has passed.
+        while (now.get() < LibraryWatcher.MAX_BATCH_DELAY_MILLIS) {
+            changes.record(StandardWatchEventKinds.ENTRY_MODIFY, A);
+            Assertions.assertFalse(changes.isReady(), "batch was ready after " + now.get() + "ms");
+            now.addAndGet(LibraryWatcher.QUIET_PERIOD_MILLIS / 5);
+        }
+
+        changes.record(StandardWatchEventKinds.ENTRY_MODIFY, A);
+        Assertions.assertTrue(changes.isReady());
+        Assertions.assertEquals(Set.of(A), changes.getChanged());
+    }
+
+    @Test
+    public void testEmptiedBatch() {
+        AtomicLong now = new AtomicLong();
+        LibraryWatcher.Changes changes = new LibraryWatcher.Changes(now::get);
+
+        // A batch which cancelled itself out is never ready...
+        changes.record(StandardWatchEventKinds.ENTRY_CREATE, A);
+        changes.record(StandardWatchEventKinds.ENTRY_DELETE, A);
+        now.addAndGet(LibraryWatcher.MAX_BATCH_DELAY_MILLIS);
+        Assertions.assertFalse(changes.isReady());
+
+        // ...and a later event starts its delays over, instead of being delivered immediately.
+        changes.record(StandardWatchEventKinds.ENTRY_CREATE, B);
+        Assertions.assertFalse(changes.isReady());
+        Assertions.assertEquals(LibraryWatcher.QUIET_PERIOD_MILLIS, changes.getWaitMillis());
+    }
+
+    @Test
+    public void testWatcher() throws Exception {
+        Path book = directory.resolve("book.epub");
+        List<LibraryWatcher.Changes> batches = new CopyOnWriteArrayList<>();
+
+        try (LibraryWatcher watcher = new LibraryWatcher(directory, batches::add)) {
+            watcher.start();
+
+            // Files which are not books are ignored.
+            Files.writeString(directory.resolve("note.txt"), "note");
+            Files.writeString(book, "book");
+
+            // Some platforms poll for changes, so give the watch service plenty of time to notice.
+            long start = System.currentTimeMillis();
+            while (batches.isEmpty() && System.currentTimeMillis() - start < 30_000) {
+                Thread.sleep(10);
+            }
+
+            Assertions.assertFalse(batches.isEmpty());
+            Assertions.assertEquals(Set.of(book), batches.get(0).getAdded());
+        }
+    }
+}
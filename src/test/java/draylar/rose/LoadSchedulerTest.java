@@ -0,0 +1,68 @@
+package draylar.rose;
+
+import draylar.rose.api.task.LoadGroup;
+import draylar.rose.api.task.LoadPriority;
+import draylar.rose.api.task.LoadScheduler;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class LoadSchedulerTest {
+
+    @Test
+    public void testPriorityLanes() throws Exception {
+        LoadScheduler scheduler = new LoadScheduler(1);
+        List<String> order = new CopyOnWriteArrayList<>();
+
+        // Block the only worker so everything else queues up behind it.
+        CountDownLatch latch = new CountDownLatch(1);
+        scheduler.run(LoadPriority.VISIBLE, null, () -> {
+            try {
+                latch.await();
+            } catch (InterruptedException ignored) {
+            }
+        });
+
+        scheduler.run(LoadPriority.IMAGES, null, () -> order.add("images"));
+        scheduler.run(LoadPriority.OFFSCREEN, null, () -> order.add("offscreen"));
+        CompletableFuture<Void> last = scheduler.run(LoadPriority.VISIBLE, null, () -> order.add("visible"));
+        Assertions.assertEquals(3, scheduler.getQueueDepth());
+
+        latch.countDown();
+        last.get();
+        while (scheduler.getCompletedCount() < 4) {
+            Thread.sleep(1);
+        }
+
+        Assertions.assertEquals(List.of("visible", "offscreen", "images"), order);
+    }
+
+    @Test
+    public void testGroupCancellation() throws Exception {
+        LoadScheduler scheduler = new LoadScheduler(1);
+        LoadGroup book = new LoadGroup("book");
+        List<String> ran = new CopyOnWriteArrayList<>();
+
+        CountDownLatch latch = new CountDownLatch(1);
+        scheduler.run(LoadPriority.VISIBLE, null, () -> {
+            try {
+                latch.await();
+            } catch (InterruptedException ignored) {
+            }
+        });
+
+        CompletableFuture<Void> cancelled = scheduler.run(LoadPriority.OFFSCREEN, book, () -> ran.add("book"));
+        CompletableFuture<Void> kept = scheduler.run(LoadPriority.OFFSCREEN, null, () -> ran.add("other"));
+        scheduler.cancel(book);
+        latch.countDown();
+        kept.get();
+
+        Assertions.assertTrue(cancelled.isCancelled());
+        Assertions.assertEquals(List.of("other"), ran);
+        Assertions.assertEquals(1, scheduler.getCancelledCount());
+    }
+}
@@ -2,6 +2,9 @@ package draylar.rose;
 
 import draylar.rose.api.Epub;
 import draylar.rose.api.EpubMetadata;
+import draylar.rose.api.PackageDocument;
+import draylar.rose.api.book.ManifestEntry;
+import draylar.rose.api.book.SpineEntry;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
@@ -25,4 +28,21 @@ public class MetadataTest {
         Assertions.assertEquals("2021-04-04", metadata.getDate());
 
     }
+
+    @Test
+    public void testPackageDocument() {
+        try (Epub epub = new Epub(THE_YOUNGEST_CAMEL)) {
+            PackageDocument packageDocument = epub.getPackageDocument();
+            Assertions.assertNotNull(packageDocument);
+
+            // Every spine entry should resolve to a manifest entry inside the archive.
+            for (SpineEntry entry : packageDocument.getSpine()) {
+                ManifestEntry manifestEntry = packageDocument.getManifestEntry(entry);
+                Assertions.assertNotNull(manifestEntry);
+                Assertions.assertNotNull(epub.read(packageDocument.resolve(manifestEntry)));
+            }
+
+            Assertions.assertNotNull(packageDocument.getCover());
+        }
+    }
 }
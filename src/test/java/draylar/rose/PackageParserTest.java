@@ -0,0 +1,71 @@
+package draylar.rose;
+
+import draylar.rose.api.Epub;
+import draylar.rose.api.PackageDocument;
+import draylar.rose.api.PackageParser;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public class PackageParserTest {
+
+    private static final Path ALICE_IN_WONDERLAND = Paths.get("out/test/resources/alice_in_wonderland.epub");
+    private static final Path THE_YOUNGEST_CAMEL = Paths.get("out/test/resources/the_youngest_camel.epub");
+    private static final int ITERATIONS = 500;
+
+    @Test
+    public void testParsersAgree() throws Exception {
+        for (Path book : new Path[] { ALICE_IN_WONDERLAND, THE_YOUNGEST_CAMEL }) {
+            byte[] contentOPF = readContentOPF(book);
+            PackageDocument dom = PackageParser.DOM.parse(new ByteArrayInputStream(contentOPF), "");
+            PackageDocument streaming = PackageParser.STREAMING.parse(new ByteArrayInputStream(contentOPF), "");
+
+            // Both parsers read the same metadata, manifest, spine and cover.
+            Assertions.assertEquals(dom, streaming);
+            Assertions.assertEquals(dom.getCover(), streaming.getCover());
+            Assertions.assertFalse(dom.getSpine().isEmpty());
+        }
+    }
+
+    /**
+     * Compares the speed of both parsers. Only runs when the {@code rose.benchmark} system property is {@code true}.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "rose.benchmark", matches = "true")
+    public void benchmarkParsers() throws Exception {
+        for (Path book : new Path[] { ALICE_IN_WONDERLAND, THE_YOUNGEST_CAMEL }) {
+            byte[] contentOPF = readContentOPF(book);
+
+            // Warm up both parsers before timing them.
+            time(PackageParser.DOM, contentOPF);
+            time(PackageParser.STREAMING, contentOPF);
+
+            long dom = time(PackageParser.DOM, contentOPF);
+            long streaming = time(PackageParser.STREAMING, contentOPF);
+            System.out.printf("Parsed the content.opf of %s %d times. DOM: %dms, streaming: %dms%n",
+                    book.getFileName(), ITERATIONS, dom / 1_000_000, streaming / 1_000_000);
+        }
+    }
+
+    private static long time(PackageParser parser, byte[] contentOPF) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            parser.parse(new ByteArrayInputStream(contentOPF), "");
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    private static byte[] readContentOPF(Path book) {
+        Epub epub = new Epub(book);
+        String contentOPF = epub.readContentOPF();
+        epub.close();
+        Assertions.assertNotNull(contentOPF);
+        return contentOPF.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,43 @@
+package draylar.rose;
+
+import draylar.rose.api.Epub;
+import draylar.rose.api.page.PageRange;
+import draylar.rose.api.page.PaginationCache;
+import draylar.rose.api.page.PaginationEngine;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+
+public class PaginationCacheTest {
+
+    private static final Path THE_YOUNGEST_CAMEL = Paths.get("out/test/resources/the_youngest_camel.epub");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testCacheRoundTrip() {
+        try (Epub epub = new Epub(THE_YOUNGEST_CAMEL)) {
+            String key = PaginationCache.createKey(epub, PaginationEngine.LAYOUT, 810, 900);
+            Assertions.assertNotNull(key);
+            Assertions.assertEquals(key, PaginationCache.createKey(epub, PaginationEngine.LAYOUT, 810, 900));
+            Assertions.assertNotEquals(key, PaginationCache.createKey(epub, PaginationEngine.LAYOUT, 640, 900));
+
+            Path location = directory.resolve(PaginationCache.FILE_NAME);
+            List<PageRange> pages = List.of(PageRange.of(0, 3), new PageRange(3, 0, 3, 1250), new PageRange(3, 1250, 4, 0));
+            PaginationCache.write(location, key, Map.of("item1", pages));
+            Map<String, List<PageRange>> cached = PaginationCache.read(location, key);
+
+            Assertions.assertNotNull(cached);
+            Assertions.assertEquals(pages, cached.get("item1"));
+
+            // Pages computed for another window size are not re-used.
+            Assertions.assertNull(PaginationCache.read(location, PaginationCache.createKey(epub, PaginationEngine.LAYOUT, 640, 900)));
+        }
+    }
+}
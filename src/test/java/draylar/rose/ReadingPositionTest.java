@@ -0,0 +1,50 @@
+package draylar.rose;
+
+import draylar.rose.api.Epub;
+import draylar.rose.api.page.PageRange;
+import draylar.rose.api.page.ReadingPosition;
+import draylar.rose.api.page.Section;
+import draylar.rose.api.page.SectionContent;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+public class ReadingPositionTest {
+
+    private static final Path THE_YOUNGEST_CAMEL = Paths.get("out/test/resources/the_youngest_camel.epub");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testPositionRoundTrip() {
+        try (Epub epub = new Epub(THE_YOUNGEST_CAMEL)) {
+            Path location = directory.resolve(ReadingPosition.FILE_NAME);
+            Assertions.assertNull(ReadingPosition.read(epub, location));
+
+            ReadingPosition position = new ReadingPosition(2, 14, 380);
+            ReadingPosition.write(epub, location, position);
+            Assertions.assertEquals(position, ReadingPosition.read(epub, location));
+
+            // Newer positions replace older ones.
+            ReadingPosition.write(epub, location, new ReadingPosition(1, 0, 0));
+            Assertions.assertEquals(new ReadingPosition(1, 0, 0), ReadingPosition.read(epub, location));
+        }
+    }
+
+    @Test
+    public void testFindPage() {
+        // Positions are found by the start of their page, whatever the size of the pages around them.
+        Section section = new Section(new SectionContent(0, "", "", List.of()), List.of(PageRange.of(0, 3), new PageRange(3, 0, 3, 1250), new PageRange(3, 1250, 6, 0)));
+        Assertions.assertEquals(0, section.findPage(0, 0));
+        Assertions.assertEquals(0, section.findPage(2, 40));
+        Assertions.assertEquals(1, section.findPage(3, 0));
+        Assertions.assertEquals(1, section.findPage(3, 1249));
+        Assertions.assertEquals(2, section.findPage(3, 1250));
+        Assertions.assertEquals(2, section.findPage(40, 0));
+    }
+}
@@ -0,0 +1,54 @@
+package draylar.rose;
+
+import draylar.rose.api.Epub;
+import draylar.rose.api.page.SectionCache;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public class SectionCacheTest {
+
+    private static final Path ALICE_IN_WONDERLAND = Paths.get("out/test/resources/alice_in_wonderland.epub");
+
+    @Test
+    public void testEviction() throws IOException {
+        try (Epub epub = new Epub(ALICE_IN_WONDERLAND)) {
+            // Each section costs 2 bytes per character, so only two of them fit.
+            SectionCache cache = new SectionCache(200);
+            cache.get(epub, "a", SectionCache.Stage.RAW, () -> "a".repeat(50));
+            cache.get(epub, "b", SectionCache.Stage.RAW, () -> "b".repeat(50));
+            Assertions.assertEquals("a".repeat(50), cache.get(epub, "a", SectionCache.Stage.RAW, () -> "unused"));
+
+            // The least recently used section is evicted first.
+            cache.get(epub, "c", SectionCache.Stage.RAW, () -> "c".repeat(50));
+            Assertions.assertNull(cache.getIfPresent(epub, "b", SectionCache.Stage.RAW));
+            Assertions.assertNotNull(cache.getIfPresent(epub, "a", SectionCache.Stage.RAW));
+            Assertions.assertNull(cache.getIfPresent(epub, "a", SectionCache.Stage.SPLIT));
+            Assertions.assertEquals(1, cache.getHits());
+            Assertions.assertEquals(3, cache.getMisses());
+            Assertions.assertEquals(1, cache.getEvictions());
+
+            cache.shed();
+            Assertions.assertEquals(100, cache.getSize());
+
+            cache.invalidate(epub.getRoot());
+            Assertions.assertEquals(0, cache.getSize());
+        }
+    }
+
+    @Test
+    public void testSharedSections() throws IOException {
+        try (Epub epub = new Epub(ALICE_IN_WONDERLAND)) {
+            // Sections read by one reader are re-used by the next, until the book is invalidated.
+            String section = epub.readSection(epub.getSpineEntry(1));
+            Assertions.assertFalse(section.isEmpty());
+            Assertions.assertSame(section, epub.readSection(epub.getSpineEntry(1)));
+
+            SectionCache.get().invalidate(epub.getRoot());
+            Assertions.assertNotSame(section, epub.readSection(epub.getSpineEntry(1)));
+        }
+    }
+}
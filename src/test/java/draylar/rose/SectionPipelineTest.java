@@ -0,0 +1,51 @@
+package draylar.rose;
+
+import draylar.rose.api.Epub;
+import draylar.rose.api.page.SectionContent;
+import draylar.rose.api.page.SectionPipeline;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class SectionPipelineTest {
+
+    private static final Path ALICE_IN_WONDERLAND = Paths.get("out/test/resources/alice_in_wonderland.epub");
+
+    @Test
+    public void testOrderedDelivery() throws IOException {
+        try (Epub epub = new Epub(ALICE_IN_WONDERLAND)) {
+            SectionPipeline pipeline = new SectionPipeline(epub, 3, Runnable::run);
+            List<Integer> delivered = Collections.synchronizedList(new ArrayList<>());
+            List<Integer> inFlight = Collections.synchronizedList(new ArrayList<>());
+            List<CompletableFuture<SectionContent>> futures = new ArrayList<>();
+
+            int count = epub.getSpine().size();
+            for (int index = 0; index < count; index++) {
+                futures.add(pipeline.request(index).whenComplete((content, error) -> {
+                    delivered.add(content.getIndex());
+                    inFlight.add(pipeline.getInFlight());
+                }));
+            }
+
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+
+            // Every section is delivered once, in spine order, and never more sections than allowed are held at once.
+            List<Integer> expected = new ArrayList<>();
+            for (int index = 0; index < count; index++) {
+                expected.add(index);
+            }
+
+            Assertions.assertEquals(expected, delivered);
+            Assertions.assertTrue(inFlight.stream().allMatch(held -> held <= pipeline.getMaxInFlight()));
+            Assertions.assertFalse(futures.get(1).join().getElements().isEmpty());
+            Assertions.assertFalse(futures.get(1).join().isFailed());
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package draylar.rose;
+
+import draylar.rose.api.page.SectionPrefetcher;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+public class SectionPrefetcherTest {
+
+    @Test
+    public void testDirection() {
+        SectionPrefetcher prefetcher = new SectionPrefetcher(10, 2, Long.MAX_VALUE);
+
+        // Reading forwards, the next section is only prefetched close to the end of the current one, while the previous one is kept warm.
+        Assertions.assertEquals(List.of(4), prefetcher.update(5, 0, 10));
+        Assertions.assertEquals(List.of(4), prefetcher.update(5, 7, 10));
+        Assertions.assertEquals(List.of(6, 4), prefetcher.update(5, 8, 10));
+
+        // Turning back swaps which section is ahead of the reader.
+        Assertions.assertEquals(List.of(6), prefetcher.update(5, 7, 10));
+        Assertions.assertEquals(-1, prefetcher.getDirection());
+        Assertions.assertEquals(List.of(4, 6), prefetcher.update(5, 1, 10));
+
+        // There is nothing to prefetch past either end of the spine.
+        Assertions.assertEquals(List.of(1), prefetcher.update(0, 0, 1));
+        Assertions.assertEquals(List.of(8), prefetcher.update(9, 0, 1));
+    }
+
+    @Test
+    public void testEviction() {
+        SectionPrefetcher prefetcher = new SectionPrefetcher(10, 2, 300);
+        prefetcher.update(5, 0, 10);
+
+        // Sections within budget are kept.
+        Assertions.assertEquals(List.of(), prefetcher.evict(Map.of(4, 100L, 5, 100L, 6, 100L)));
+
+        // The furthest sections are dropped first, behind the reader before ahead of them, and the reader's neighbourhood is never dropped.
+        Assertions.assertEquals(List.of(2, 8), prefetcher.evict(Map.of(2, 100L, 4, 100L, 5, 100L, 6, 100L, 8, 100L)));
+
+        SectionPrefetcher empty = new SectionPrefetcher(10, 2, 0);
+        empty.update(5, 0, 10);
+        Assertions.assertEquals(List.of(), empty.evict(Map.of(4, 100L, 5, 100L, 6, 100L)));
+    }
+}